@@ -1,16 +1,33 @@
 package server;
 
+import server.config.ServerConfig;
+import server.connector.AbstractConnector;
 import server.connector.HttpConnector;
+import server.connector.nio.NioConnector;
+
+import java.nio.file.Paths;
 
 /**
- * 启动模块目前我们没有多大工作，只是启动HttpConnector
+ * 启动模块目前我们没有多大工作，只是加载配置并启动连接器。 第一个启动参数可以指定配置文件路径，不指定时使用classpath下的server.properties
+ *
+ * <p>server.connector为nio时使用{@link NioConnector}，否则使用阻塞的{@link HttpConnector}。
+ * 启动前部署所有web应用并初始化servlet.loadOnStartup中的Servlet，JVM退出时停止连接器并销毁Servlet
  * @author zhout
  * @date 2020/6/11 15:42
  */
 public final class Bootstrap {
 
   public static void main(String[] args){
-    //启动连接器等待连接
-    new HttpConnector().start();
+    ServerConfig config =
+        args.length > 0 ? ServerConfig.load(Paths.get(args[0])) : ServerConfig.loadDefault();
+    AbstractConnector connector =
+        "nio".equalsIgnoreCase(config.getString("server.connector", "bio"))
+            ? new NioConnector(config)
+            : new HttpConnector(config);
+    // 启动所有web应用，再启动连接器等待连接
+    connector.getContextManager().start();
+    connector.start();
+    // JVM退出时停止连接器并销毁Servlet
+    Runtime.getRuntime().addShutdownHook(new Thread(connector::stop, "server-shutdown"));
   }
 }
@@ -0,0 +1,143 @@
+package server.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 服务器配置，从properties文件加载。 同名的JVM系统属性（-Dkey=value）优先于配置文件，方便临时调整参数。
+ * web应用的配置中context.&lt;应用名&gt;.&lt;key&gt;又优先于同名的系统属性，全局的-D参数不会覆盖单个应用的配置。
+ *
+ * @author zhout
+ * @date 2020/7/2 10:12
+ */
+public class ServerConfig {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServerConfig.class);
+
+  /** classpath下默认的配置文件名 */
+  public static final String DEFAULT_CONFIG_FILE = "server.properties";
+
+  private final Properties properties;
+
+  /** web应用自己的配置，优先于系统属性和全局配置，全局配置中为空 */
+  private final Map<String, String> scoped;
+
+  public ServerConfig(Properties properties) {
+    this(properties, Collections.emptyMap());
+  }
+
+  private ServerConfig(Properties properties, Map<String, String> scoped) {
+    this.properties = properties;
+    this.scoped = scoped;
+  }
+
+  /**
+   * 加载classpath下的默认配置文件，文件不存在时使用空配置（全部取默认值）
+   *
+   * @return 配置
+   */
+  public static ServerConfig loadDefault() {
+    Properties properties = new Properties();
+    try (InputStream input =
+        ServerConfig.class.getClassLoader().getResourceAsStream(DEFAULT_CONFIG_FILE)) {
+      if (input != null) {
+        properties.load(input);
+      } else {
+        LOGGER.info("{} not found in classpath, use default config.", DEFAULT_CONFIG_FILE);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("load " + DEFAULT_CONFIG_FILE + " is fail!", e);
+    }
+    return new ServerConfig(properties);
+  }
+
+  /**
+   * 加载指定路径的配置文件
+   *
+   * @param path 配置文件路径
+   * @return 配置
+   */
+  public static ServerConfig load(Path path) {
+    Properties properties = new Properties();
+    try (InputStream input = Files.newInputStream(path)) {
+      properties.load(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("load config file " + path + " is fail!", e);
+    }
+    LOGGER.info("Load server config from {}", path);
+    return new ServerConfig(properties);
+  }
+
+  public String getString(String key, String defaultValue) {
+    String value = scoped.get(key);
+    if (value == null) {
+      value = System.getProperty(key);
+    }
+    if (value == null) {
+      value = properties.getProperty(key);
+    }
+    return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+  }
+
+  public int getInt(String key, int defaultValue) {
+    String value = getString(key, null);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException("config " + key + " is not a number: " + value);
+    }
+  }
+
+  public boolean getBoolean(String key, boolean defaultValue) {
+    String value = getString(key, null);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+
+  /**
+   * 获取以指定前缀开头的全部配置，返回的key去掉了前缀，优先级与{@link #getString(String, String)}相同
+   *
+   * @param prefix key前缀
+   * @return 配置，没有时返回空Map
+   */
+  public Map<String, String> getByPrefix(String prefix) {
+    Map<String, String> values = new LinkedHashMap<>();
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith(prefix) && key.length() > prefix.length()) {
+        values.put(key.substring(prefix.length()), getString(key, ""));
+      }
+    }
+    for (String key : System.getProperties().stringPropertyNames()) {
+      if (key.startsWith(prefix) && key.length() > prefix.length()) {
+        values.put(key.substring(prefix.length()), getString(key, ""));
+      }
+    }
+    for (String key : scoped.keySet()) {
+      if (key.startsWith(prefix) && key.length() > prefix.length()) {
+        values.put(key.substring(prefix.length()), getString(key, ""));
+      }
+    }
+    return values;
+  }
+
+  /**
+   * 生成某个web应用的配置：context.&lt;应用名&gt;.&lt;key&gt;覆盖同名的系统属性和全局配置，其他配置沿用全局配置
+   *
+   * @param name 应用名
+   * @return 应用的配置
+   */
+  public ServerConfig forContext(String name) {
+    return new ServerConfig(properties, getByPrefix("context." + name + "."));
+  }
+}
@@ -0,0 +1,346 @@
+package server.connector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.config.ServerConfig;
+import server.constant.HttpVersionConstant;
+import server.context.ContextManager;
+import server.enums.HttpStatusEnum;
+import server.http.process.HttpProcess;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接器公共部分：监听Socket的绑定和参数、工作线程池、HttpProcess池以及线程池满时的503处理。 具体的连接读写方式由子类实现。
+ *
+ * <p>executor.virtualThreads开启且运行在Java 21及以上时，每个连接由一个虚拟线程处理， 阻塞读写只会挂起虚拟线程，不需要再调整线程池大小。
+ *
+ * @author zhout
+ * @date 2020/7/3 14:20
+ */
+public abstract class AbstractConnector {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractConnector.class);
+
+  /** 停止时等待工作线程处理完已有连接的最长时间（秒） */
+  private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  protected volatile boolean shutdowned;
+
+  /** 监听端口 */
+  protected final int port;
+
+  /** 绑定地址，0.0.0.0表示绑定所有网卡 */
+  protected final String address;
+
+  /** 内核中等待accept的连接队列长度 */
+  protected final int backlog;
+
+  protected final boolean reuseAddress;
+
+  protected final boolean reusePort;
+
+  protected final boolean tcpNoDelay;
+
+  /** 接收缓冲区大小，小于等于0时使用系统默认值 */
+  protected final int receiveBufferSize;
+
+  /** 发送缓冲区大小，小于等于0时使用系统默认值 */
+  protected final int sendBufferSize;
+
+  /** 读超时（毫秒），0表示不超时 */
+  protected final int soTimeout;
+
+  /** 长连接上等待下一个请求的超时时间（毫秒） */
+  protected final int keepAliveTimeout;
+
+  /** 一个长连接上最多处理的请求数，小于0表示不限制，1表示关闭长连接 */
+  protected final int maxKeepAliveRequests;
+
+  /** servlet响应缓冲区大小 */
+  private final int responseBufferSize;
+
+  /** 请求结束时是否丢弃交给Servlet的外观对象 */
+  private final boolean discardFacades;
+
+  /** 核心工作线程数 */
+  private final int corePoolSize;
+
+  /** 最大工作线程数 */
+  private final int maxPoolSize;
+
+  /** 等待处理的连接队列长度 */
+  private final int queueCapacity;
+
+  /** 空闲的非核心线程存活时间（秒） */
+  private final int keepAliveSeconds;
+
+  /** 是否为每个连接启动一个虚拟线程，代替有界的平台线程池 */
+  private final boolean virtualThreads;
+
+  /** 工作线程池 */
+  protected ExecutorService executor;
+
+  /** 部署的所有web应用，所有工作线程共用 */
+  private final ContextManager contextManager;
+
+  /** 可复用的HttpProcess实例 */
+  private final Deque<HttpProcess> processors = new ConcurrentLinkedDeque<>();
+
+  protected AbstractConnector(ServerConfig config) {
+    this.port = config.getInt("server.port", 8080);
+    this.address = config.getString("server.address", "127.0.0.1");
+    this.backlog = config.getInt("server.backlog", 100);
+    this.reuseAddress = config.getBoolean("server.reuseAddress", true);
+    this.reusePort = config.getBoolean("server.reusePort", false);
+    this.tcpNoDelay = config.getBoolean("server.tcpNoDelay", true);
+    this.receiveBufferSize = config.getInt("server.receiveBufferSize", 0);
+    this.sendBufferSize = config.getInt("server.sendBufferSize", 0);
+    this.soTimeout = config.getInt("server.soTimeout", 20000);
+    this.keepAliveTimeout = config.getInt("server.keepAliveTimeout", soTimeout);
+    this.maxKeepAliveRequests = config.getInt("server.maxKeepAliveRequests", 100);
+    this.responseBufferSize = Math.max(0, config.getInt("server.responseBufferSize", 8192));
+    this.discardFacades = config.getBoolean("server.discardFacades", true);
+    this.corePoolSize =
+        config.getInt("executor.corePoolSize", Runtime.getRuntime().availableProcessors());
+    this.maxPoolSize = config.getInt("executor.maxPoolSize", 200);
+    this.queueCapacity = config.getInt("executor.queueCapacity", 100);
+    this.keepAliveSeconds = config.getInt("executor.keepAliveSeconds", 60);
+    this.virtualThreads = config.getBoolean("executor.virtualThreads", false);
+    this.contextManager = new ContextManager(config);
+  }
+
+  /** 创建工作线程池并启动连接器 */
+  public void start() {
+    if (virtualThreads) {
+      executor = newVirtualThreadExecutor();
+      if (executor == null) {
+        LOGGER.warn("Virtual threads need Java 21 or later, fall back to platform thread pool.");
+      } else {
+        startInternal();
+        return;
+      }
+    }
+    executor =
+        new ThreadPoolExecutor(
+            corePoolSize,
+            Math.max(corePoolSize, maxPoolSize),
+            keepAliveSeconds,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            new WorkerThreadFactory(),
+            new ServiceUnavailableHandler());
+    startInternal();
+  }
+
+  /** 停止接收新连接，等待已经提交的连接处理完毕后销毁所有Servlet */
+  public void stop() {
+    shutdowned = true;
+    stopInternal();
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          LOGGER.warn("Worker threads are still running after {}s.", SHUTDOWN_TIMEOUT_SECONDS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    contextManager.destroy();
+  }
+
+  /** 启动接收连接的线程 */
+  protected abstract void startInternal();
+
+  /** 关闭监听Socket以及连接器自己的线程 */
+  protected abstract void stopInternal();
+
+  /**
+   * 打开并绑定服务端通道。通过ServerSocketChannel绑定，以便设置SO_REUSEPORT这类ServerSocket不支持的选项
+   *
+   * @return 已绑定的服务端通道（阻塞模式）
+   * @throws IOException 绑定失败
+   */
+  protected ServerSocketChannel bind() throws IOException {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    try {
+      channel.setOption(StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+      if (reusePort) {
+        if (channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+          channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        } else {
+          LOGGER.warn("SO_REUSEPORT is not supported on this platform, ignored.");
+        }
+      }
+      // 接收缓冲区需要在bind之前设置，大于64K的窗口才能在握手时生效
+      if (receiveBufferSize > 0) {
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+      }
+      channel.bind(new InetSocketAddress(InetAddress.getByName(address), port), backlog);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  /**
+   * 设置已接收连接的Socket参数，读超时由各连接器自己处理
+   *
+   * @param channel 客户端连接
+   * @throws IOException 设置失败
+   */
+  protected void configure(NetworkChannel channel) throws IOException {
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+    if (sendBufferSize > 0) {
+      channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+    }
+    if (receiveBufferSize > 0) {
+      channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+    }
+  }
+
+  /**
+   * 创建每个任务一个虚拟线程的执行器。虚拟线程从Java 21开始提供，项目按Java 17编译，所以通过反射创建
+   *
+   * @return 执行器，运行时不支持虚拟线程时返回null
+   */
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder =
+          builderClass
+              .getMethod("name", String.class, long.class)
+              .invoke(builder, "http-virtual-worker-", 1L);
+      ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+      return (ExecutorService)
+          Executors.class
+              .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+              .invoke(null, factory);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /** 启动日志中展示的工作线程信息 */
+  protected String describeExecutor() {
+    return executor instanceof ThreadPoolExecutor
+        ? "worker threads " + corePoolSize + "-" + maxPoolSize
+        : "virtual thread per connection";
+  }
+
+  public int getSoTimeout() {
+    return soTimeout;
+  }
+
+  public int getKeepAliveTimeout() {
+    return keepAliveTimeout;
+  }
+
+  public int getMaxKeepAliveRequests() {
+    return maxKeepAliveRequests;
+  }
+
+  public int getResponseBufferSize() {
+    return responseBufferSize;
+  }
+
+  public boolean isDiscardFacades() {
+    return discardFacades;
+  }
+
+  public ContextManager getContextManager() {
+    return contextManager;
+  }
+
+  /**
+   * 从池中取出一个HttpProcess，池为空时新建
+   *
+   * @return HttpProcess实例
+   */
+  protected HttpProcess createProcessor() {
+    HttpProcess process = processors.poll();
+    return process != null ? process : new HttpProcess(this);
+  }
+
+  /**
+   * 处理完毕的HttpProcess放回池中
+   *
+   * @param process HttpProcess实例
+   */
+  protected void recycle(HttpProcess process) {
+    processors.push(process);
+  }
+
+  protected static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOGGER.debug("Close socket is fail.", e);
+    }
+  }
+
+  /** 提交给工作线程池的连接处理任务，被拒绝时需要拿到连接返回503 */
+  protected interface SocketTask extends Runnable {
+
+    /** 任务对应的客户端连接 */
+    SocketChannel getChannel();
+  }
+
+  /** 线程池和队列都已满时，直接返回503并关闭连接 */
+  private static class ServiceUnavailableHandler implements RejectedExecutionHandler {
+
+    private static final byte[] RESPONSE =
+        (HttpVersionConstant.HTTP_1_1
+                + " "
+                + HttpStatusEnum.SERVICE_UNAVAILABLE.getStatus()
+                + " "
+                + HttpStatusEnum.SERVICE_UNAVAILABLE.getDesc()
+                + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+            .getBytes();
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      SocketChannel channel = ((SocketTask) task).getChannel();
+      LOGGER.warn("Worker pool is exhausted, reject connection {}", channel);
+      try {
+        // 非阻塞通道可能写不完，503只是尽力而为
+        channel.write(ByteBuffer.wrap(RESPONSE));
+      } catch (IOException e) {
+        LOGGER.debug("Write 503 response is fail.", e);
+      } finally {
+        closeQuietly(channel);
+      }
+    }
+  }
+
+  /** 工作线程工厂，给线程命名方便排查问题 */
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger index = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      return new Thread(runnable, "http-worker-" + index.incrementAndGet());
+    }
+  }
+}
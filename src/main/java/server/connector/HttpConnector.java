@@ -2,30 +2,35 @@ package server.connector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import server.config.ServerConfig;
 import server.http.process.HttpProcess;
 
 import java.io.IOException;
-import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.URL;
+import java.nio.channels.SocketChannel;
 import java.util.Optional;
 
 /**
- * Http连接器
+ * Http连接器（阻塞IO）
+ *
+ * <p>接收线程只负责accept，连接交给有界的工作线程池处理；HttpProcess实例放在池中复用。 线程池和队列都满时直接向客户端返回503。
+ * 监听地址、端口、backlog以及各项Socket参数都从{@link ServerConfig}读取。
  *
  * @author zhout
  * @date 2020/6/11 15:44
  */
-public class HttpConnector implements Runnable {
+public class HttpConnector extends AbstractConnector implements Runnable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HttpConnector.class);
 
-  private transient boolean shutdowned;
-
   /** 用户自定义web项目的相对路径 */
   public static final String WEB_PROJECT_ROOT;
 
+  /** 服务端Socket */
+  private ServerSocket serverSocket;
+
   static {
     // 初始化用户的相对目录
     URL webrootURL = HttpConnector.class.getClassLoader().getResource("webroot");
@@ -35,31 +40,62 @@ public class HttpConnector implements Runnable {
             .getPath();
   }
 
-  public void start() {
-    new Thread(this).start();
+  public HttpConnector(ServerConfig config) {
+    super(config);
+  }
+
+  @Override
+  protected void startInternal() {
+    Thread acceptor = new Thread(this, "http-acceptor");
+    acceptor.start();
+  }
+
+  @Override
+  protected void stopInternal() {
+    try {
+      if (serverSocket != null) {
+        serverSocket.close();
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Close server socket is fail!", e);
+    }
   }
 
   @Override
   public void run() {
     // 开启SocketServer服务等待连接
-    ServerSocket serverSocket;
     try {
-      serverSocket = new ServerSocket(8080, 1, InetAddress.getByName("127.0.0.1"));
-      LOGGER.info("Server is starting ... listener port {}", 8080);
+      serverSocket = bind().socket();
+      LOGGER.info(
+          "Server is starting ... listener {}, backlog {}, {}",
+          serverSocket.getLocalSocketAddress(),
+          backlog,
+          describeExecutor());
     } catch (IOException e) {
       LOGGER.error("Server shutdown!", e);
       throw new RuntimeException(e);
     }
 
     while (!shutdowned) {
-      // 阻塞等待连接
-      try (Socket accept = serverSocket.accept()) {
-        // 处理连接
-        HttpProcess process = new HttpProcess(this);
-        process.process(accept);
+      // 阻塞等待连接，拿到连接后立即交给工作线程
+      Socket accept;
+      try {
+        accept = serverSocket.accept();
       } catch (IOException e) {
-        LOGGER.warn("Catch from user process.", e);
+        if (!shutdowned) {
+          LOGGER.warn("Catch from server socket accept.", e);
+        }
+        continue;
       }
+      try {
+        configure(accept.getChannel());
+        accept.setSoTimeout(soTimeout);
+      } catch (IOException e) {
+        LOGGER.warn("Set socket options is fail, close connection.", e);
+        closeQuietly(accept.getChannel());
+        continue;
+      }
+      executor.execute(new SocketProcessor(accept));
     }
     // 关闭服务器
     try {
@@ -68,4 +104,32 @@ public class HttpConnector implements Runnable {
       LOGGER.error("Shutdown server is fail!", e);
     }
   }
+
+  /** 在工作线程中处理单个连接 */
+  private class SocketProcessor implements SocketTask {
+
+    private final Socket socket;
+
+    SocketProcessor(Socket socket) {
+      this.socket = socket;
+    }
+
+    @Override
+    public SocketChannel getChannel() {
+      return socket.getChannel();
+    }
+
+    @Override
+    public void run() {
+      HttpProcess process = createProcessor();
+      try (Socket accept = socket) {
+        // 处理连接
+        process.process(accept);
+      } catch (IOException e) {
+        LOGGER.warn("Catch from user process.", e);
+      } finally {
+        recycle(process);
+      }
+    }
+  }
 }
@@ -0,0 +1,173 @@
+package server.connector.nio;
+
+import server.constant.HttpConstant;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 一个NIO客户端连接的状态：通道、所属Poller、读缓冲区以及包装给HttpProcess使用的输入输出流。
+ *
+ * <p>读缓冲区在两次操作之间始终处于读模式（flip之后），Poller和工作线程交替使用它， 同一时刻只会有一方持有连接。
+ *
+ * @author zhout
+ * @date 2020/7/3 15:20
+ */
+public class NioChannel {
+
+  private final SocketChannel channel;
+
+  private final NioPoller poller;
+
+  private final ByteBuffer readBuffer;
+
+  private final NioInputStream input;
+
+  private final NioOutputStream output;
+
+  /** 注册到Poller后的SelectionKey，由Poller线程维护 */
+  private SelectionKey key;
+
+  /** 从缓冲区position开始已经扫描过、确认不包含请求头结束符的字节数 */
+  private int scanned;
+
+  /** 最近一次读到数据的时间 */
+  private volatile long lastAccess = System.currentTimeMillis();
+
+  /** 在Poller上等待数据的超时时间（毫秒），新连接使用读超时，长连接使用keepAliveTimeout */
+  private volatile int idleTimeout;
+
+  /** 该连接上已经处理的请求数 */
+  private int requestCount;
+
+  public NioChannel(
+      SocketChannel channel,
+      NioPoller poller,
+      int bufferSize,
+      SelectorPool selectorPool,
+      int timeout) {
+    this.channel = channel;
+    this.poller = poller;
+    this.idleTimeout = timeout;
+    this.readBuffer = ByteBuffer.allocate(bufferSize);
+    this.readBuffer.flip();
+    this.input = new NioInputStream(this, selectorPool, timeout);
+    this.output = new NioOutputStream(channel, selectorPool, timeout);
+  }
+
+  /**
+   * 非阻塞地从通道读取数据追加到缓冲区
+   *
+   * @return 读到的字节数，-1表示连接已关闭
+   * @throws IOException 读取出错
+   */
+  int fill() throws IOException {
+    int position = readBuffer.position();
+    // 缓冲区已读完时直接重置，避免compact拷贝
+    if (position == readBuffer.limit()) {
+      readBuffer.clear();
+      scanned = 0;
+    } else {
+      readBuffer.compact();
+    }
+    int read;
+    try {
+      read = channel.read(readBuffer);
+    } finally {
+      readBuffer.flip();
+    }
+    if (read > 0) {
+      lastAccess = System.currentTimeMillis();
+    }
+    return read;
+  }
+
+  /** 缓冲区中是否已经有完整的请求头（以空行结束，和解析器一样兼容只有LF的行结束符） */
+  boolean isHeaderComplete() {
+    int start = readBuffer.position() + Math.max(0, scanned - 2);
+    int limit = readBuffer.limit();
+    for (int i = start; i + 1 < limit; i++) {
+      if (readBuffer.get(i) != HttpConstant.LINE_FEED) {
+        continue;
+      }
+      byte next = readBuffer.get(i + 1);
+      if (next == HttpConstant.LINE_FEED
+          || (next == HttpConstant.CARRIAGE_RETURN
+              && i + 2 < limit
+              && readBuffer.get(i + 2) == HttpConstant.LINE_FEED)) {
+        scanned = 0;
+        return true;
+      }
+    }
+    scanned = limit - readBuffer.position();
+    return false;
+  }
+
+  /**
+   * 工作线程处理完请求、把连接交还给Poller等待下一个请求
+   *
+   * @param keepAliveTimeout 等待下一个请求的超时时间（毫秒）
+   */
+  void prepareForPoll(int keepAliveTimeout) {
+    scanned = 0;
+    idleTimeout = keepAliveTimeout;
+    lastAccess = System.currentTimeMillis();
+  }
+
+  /**
+   * 记录处理了一个新请求
+   *
+   * @return 该连接上已处理的请求数（包括本次）
+   */
+  int incrementRequestCount() {
+    return ++requestCount;
+  }
+
+  /** 缓冲区已满却还没有读到完整请求头 */
+  boolean isBufferFull() {
+    return readBuffer.position() == 0 && readBuffer.limit() == readBuffer.capacity();
+  }
+
+  ByteBuffer getReadBuffer() {
+    return readBuffer;
+  }
+
+  public SocketChannel getChannel() {
+    return channel;
+  }
+
+  public NioPoller getPoller() {
+    return poller;
+  }
+
+  public NioInputStream getInputStream() {
+    return input;
+  }
+
+  public NioOutputStream getOutputStream() {
+    return output;
+  }
+
+  SelectionKey getKey() {
+    return key;
+  }
+
+  void setKey(SelectionKey key) {
+    this.key = key;
+  }
+
+  long getLastAccess() {
+    return lastAccess;
+  }
+
+  int getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  @Override
+  public String toString() {
+    return channel.toString();
+  }
+}
@@ -0,0 +1,177 @@
+package server.connector.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.config.ServerConfig;
+import server.connector.AbstractConnector;
+import server.http.process.HttpProcess;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 非阻塞IO的Http连接器
+ *
+ * <p>接收线程accept之后把连接轮流分配给若干个{@link NioPoller}事件循环。 Poller把数据读进连接自己的缓冲区，读到完整的请求头后才把连接交给工作线程，
+ * 交由已有的HttpProcess/ServletProcess流程处理。空闲连接只占用一个缓冲区，不占用线程。
+ *
+ * @author zhout
+ * @date 2020/7/3 16:40
+ */
+public class NioConnector extends AbstractConnector implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NioConnector.class);
+
+  /** 事件循环线程数 */
+  private final int pollerThreads;
+
+  /** 每个连接的读缓冲区大小，同时也是请求头的最大长度 */
+  private final int headerBufferSize;
+
+  private final SelectorPool selectorPool = new SelectorPool();
+
+  private final AtomicInteger pollerIndex = new AtomicInteger();
+
+  private NioPoller[] pollers;
+
+  private ServerSocketChannel serverChannel;
+
+  public NioConnector(ServerConfig config) {
+    super(config);
+    this.pollerThreads =
+        config.getInt(
+            "nio.pollerThreads", Math.min(2, Runtime.getRuntime().availableProcessors()));
+    this.headerBufferSize = config.getInt("nio.headerBufferSize", 8192);
+  }
+
+  @Override
+  protected void startInternal() {
+    try {
+      serverChannel = bind();
+      pollers = new NioPoller[Math.max(1, pollerThreads)];
+      for (int i = 0; i < pollers.length; i++) {
+        pollers[i] = new NioPoller(this);
+        Thread thread = new Thread(pollers[i], "http-nio-poller-" + i);
+        thread.setDaemon(true);
+        thread.start();
+      }
+    } catch (IOException e) {
+      LOGGER.error("Server shutdown!", e);
+      throw new RuntimeException(e);
+    }
+    LOGGER.info(
+        "Nio server is starting ... listener {}, backlog {}, pollers {}, {}",
+        serverChannel.socket().getLocalSocketAddress(),
+        backlog,
+        pollers.length,
+        describeExecutor());
+    new Thread(this, "http-nio-acceptor").start();
+  }
+
+  @Override
+  protected void stopInternal() {
+    try {
+      if (serverChannel != null) {
+        serverChannel.close();
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Close server socket is fail!", e);
+    }
+    if (pollers != null) {
+      for (NioPoller poller : pollers) {
+        poller.stop();
+      }
+    }
+    selectorPool.close();
+  }
+
+  @Override
+  public void run() {
+    while (!shutdowned) {
+      // 阻塞等待连接，设置为非阻塞模式后交给Poller
+      SocketChannel accept;
+      try {
+        accept = serverChannel.accept();
+      } catch (IOException e) {
+        if (!shutdowned) {
+          LOGGER.warn("Catch from server socket accept.", e);
+        }
+        continue;
+      }
+      try {
+        configure(accept);
+        accept.configureBlocking(false);
+      } catch (IOException e) {
+        LOGGER.warn("Set socket options is fail, close connection.", e);
+        closeQuietly(accept);
+        continue;
+      }
+      NioPoller poller = pollers[(pollerIndex.getAndIncrement() & Integer.MAX_VALUE) % pollers.length];
+      poller.register(new NioChannel(accept, poller, headerBufferSize, selectorPool, soTimeout));
+    }
+  }
+
+  /**
+   * 请求头已经完整，交给工作线程处理
+   *
+   * @param channel 客户端连接
+   */
+  void dispatch(NioChannel channel) {
+    executor.execute(new ChannelProcessor(channel));
+  }
+
+  /**
+   * 关闭连接，同时取消在Poller上的注册
+   *
+   * @param channel 客户端连接
+   */
+  void close(NioChannel channel) {
+    closeQuietly(channel.getChannel());
+  }
+
+  /**
+   * 在工作线程中处理连接上的请求。缓冲区中已有的流水线请求直接在当前线程接着处理， 缓冲区读空后如果保持连接，就把连接交还给Poller等待下一个请求
+   */
+  private class ChannelProcessor implements SocketTask {
+
+    private final NioChannel channel;
+
+    ChannelProcessor(NioChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public SocketChannel getChannel() {
+      return channel.getChannel();
+    }
+
+    @Override
+    public void run() {
+      HttpProcess process = createProcessor();
+      // 只有正常处理完才交还给Poller，处理中抛出任何异常都关闭连接，否则连接既不关闭也不会被Poller超时回收
+      boolean reuse = false;
+      try {
+        NioInputStream input = channel.getInputStream();
+        boolean keepAlive;
+        do {
+          int served = channel.incrementRequestCount();
+          boolean keepAliveAllowed = maxKeepAliveRequests < 0 || served < maxKeepAliveRequests;
+          keepAlive = process.process(input, channel.getOutputStream(), keepAliveAllowed);
+        } while (keepAlive && input.available() > 0);
+        reuse = keepAlive && !shutdowned;
+      } catch (IOException | RuntimeException e) {
+        LOGGER.warn("Catch from user process.", e);
+      } finally {
+        recycle(process);
+        if (reuse) {
+          channel.prepareForPoll(keepAliveTimeout);
+          channel.getPoller().register(channel);
+        } else {
+          close(channel);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package server.connector.nio;
+
+import server.http.stream.InputBuffer;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+
+/**
+ * 基于连接读缓冲区的阻塞输入流。缓冲区有数据时直接返回，没有数据时借用临时Selector等待通道可读， 超时抛出{@link SocketTimeoutException}。
+ *
+ * <p>关闭流不会关闭连接，连接的生命周期由连接器管理。
+ *
+ * @author zhout
+ * @date 2020/7/3 15:40
+ */
+public class NioInputStream extends InputBuffer {
+
+  private final NioChannel channel;
+
+  private final SelectorPool selectorPool;
+
+  private final int timeout;
+
+  NioInputStream(NioChannel channel, SelectorPool selectorPool, int timeout) {
+    this.channel = channel;
+    this.selectorPool = selectorPool;
+    this.timeout = timeout;
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return channel.getReadBuffer();
+  }
+
+  /**
+   * 阻塞直到读到数据
+   *
+   * @return 读到的字节数，-1表示连接已关闭
+   * @throws IOException 读取出错或超时
+   */
+  @Override
+  public int fill() throws IOException {
+    while (true) {
+      int read = channel.fill();
+      if (read != 0) {
+        return read;
+      }
+      if (!selectorPool.await(channel.getChannel(), SelectionKey.OP_READ, timeout)) {
+        throw new SocketTimeoutException("Read timed out");
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package server.connector.nio;
+
+import server.http.stream.ChannelOutputStream;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 写非阻塞通道的输出流。发送缓冲区满时借用临时Selector等待通道可写，超时抛出{@link SocketTimeoutException}。
+ *
+ * <p>关闭流不会关闭连接，连接的生命周期由连接器管理。
+ *
+ * @author zhout
+ * @date 2020/7/3 15:52
+ */
+public class NioOutputStream extends ChannelOutputStream {
+
+  private final SelectorPool selectorPool;
+
+  private final int timeout;
+
+  NioOutputStream(SocketChannel channel, SelectorPool selectorPool, int timeout) {
+    super(channel);
+    this.selectorPool = selectorPool;
+    this.timeout = timeout;
+  }
+
+  @Override
+  protected void awaitWritable() throws IOException {
+    if (!selectorPool.await(channel, SelectionKey.OP_WRITE, timeout)) {
+      throw new SocketTimeoutException("Write timed out");
+    }
+  }
+}
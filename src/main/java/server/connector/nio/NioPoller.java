@@ -0,0 +1,149 @@
+package server.connector.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * NIO事件循环。负责空闲连接（新连接以及长连接上两个请求之间）的读事件：把数据读入连接的缓冲区， 读到完整的请求头后交给工作线程处理，同时关闭长时间没有数据的连接。
+ *
+ * <p>所有对SelectionKey的修改都在Poller线程中进行，其他线程通过{@link #register(NioChannel)}投递。
+ *
+ * @author zhout
+ * @date 2020/7/3 16:10
+ */
+public class NioPoller implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NioPoller.class);
+
+  /** 两次超时检查之间的间隔（毫秒） */
+  private static final long TIMEOUT_CHECK_INTERVAL = 1000;
+
+  private final NioConnector connector;
+
+  private final Selector selector;
+
+  /** 等待注册（或重新关注读事件）的连接 */
+  private final Queue<NioChannel> registrations = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean running = true;
+
+  private long nextTimeoutCheck;
+
+  public NioPoller(NioConnector connector) throws IOException {
+    this.connector = connector;
+    this.selector = Selector.open();
+  }
+
+  /**
+   * 让Poller关注该连接的读事件。可以在任意线程调用
+   *
+   * @param channel 客户端连接
+   */
+  public void register(NioChannel channel) {
+    registrations.offer(channel);
+    selector.wakeup();
+  }
+
+  public void stop() {
+    running = false;
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        selector.select(TIMEOUT_CHECK_INTERVAL);
+        processRegistrations();
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+          SelectionKey key = iterator.next();
+          iterator.remove();
+          processKey(key);
+        }
+        checkTimeout();
+      } catch (IOException e) {
+        LOGGER.error("Poller select is fail.", e);
+      }
+    }
+    // 关闭所有连接
+    for (SelectionKey key : selector.keys()) {
+      connector.close((NioChannel) key.attachment());
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      LOGGER.warn("Close selector is fail.", e);
+    }
+  }
+
+  private void processRegistrations() {
+    NioChannel channel;
+    while ((channel = registrations.poll()) != null) {
+      SelectionKey key = channel.getKey();
+      try {
+        if (key == null) {
+          channel.setKey(channel.getChannel().register(selector, SelectionKey.OP_READ, channel));
+        } else if (key.isValid()) {
+          key.interestOps(SelectionKey.OP_READ);
+        } else {
+          connector.close(channel);
+        }
+      } catch (ClosedChannelException e) {
+        connector.close(channel);
+      }
+    }
+  }
+
+  private void processKey(SelectionKey key) {
+    NioChannel channel = (NioChannel) key.attachment();
+    if (!key.isValid() || !key.isReadable()) {
+      return;
+    }
+    try {
+      if (channel.fill() < 0) {
+        connector.close(channel);
+        return;
+      }
+      if (channel.isHeaderComplete()) {
+        // 交给工作线程期间不再关注读事件
+        key.interestOps(0);
+        connector.dispatch(channel);
+      } else if (channel.isBufferFull()) {
+        LOGGER.warn("Request header is too large, close connection {}", channel);
+        connector.close(channel);
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Read from {} is fail.", channel, e);
+      connector.close(channel);
+    }
+  }
+
+  /** 关闭超过空闲超时仍没有数据的连接，超时小于等于0的连接不检查 */
+  private void checkTimeout() {
+    long now = System.currentTimeMillis();
+    if (now < nextTimeoutCheck) {
+      return;
+    }
+    nextTimeoutCheck = now + TIMEOUT_CHECK_INTERVAL;
+    for (SelectionKey key : selector.keys()) {
+      NioChannel channel = (NioChannel) key.attachment();
+      int timeout = channel.getIdleTimeout();
+      if (key.isValid()
+          && timeout > 0
+          && (key.interestOps() & SelectionKey.OP_READ) != 0
+          && now - channel.getLastAccess() > timeout) {
+        LOGGER.debug("Connection {} is timeout, close it.", channel);
+        connector.close(channel);
+      }
+    }
+  }
+}
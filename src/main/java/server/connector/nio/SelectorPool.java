@@ -0,0 +1,59 @@
+package server.connector.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 临时Selector池。工作线程在非阻塞通道上读写时，如果数据未就绪，借一个Selector单独等待该通道就绪， 以此模拟阻塞读写，而不用把通道切回阻塞模式。
+ *
+ * @author zhout
+ * @date 2020/7/3 15:05
+ */
+public class SelectorPool {
+
+  private final Queue<Selector> selectors = new ConcurrentLinkedQueue<>();
+
+  /**
+   * 等待通道就绪
+   *
+   * @param channel 非阻塞通道
+   * @param ops 等待的事件，{@link SelectionKey#OP_READ}或{@link SelectionKey#OP_WRITE}
+   * @param timeout 超时时间（毫秒），小于等于0表示一直等待
+   * @return 是否在超时前就绪
+   * @throws IOException Selector出错
+   */
+  public boolean await(SelectableChannel channel, int ops, long timeout) throws IOException {
+    Selector selector = selectors.poll();
+    if (selector == null) {
+      selector = Selector.open();
+    }
+    SelectionKey key = null;
+    try {
+      key = channel.register(selector, ops);
+      return selector.select(Math.max(0, timeout)) > 0;
+    } finally {
+      if (key != null) {
+        key.cancel();
+        // 立即注销已取消的key，Selector才能被下一个通道复用
+        selector.selectNow();
+      }
+      selectors.offer(selector);
+    }
+  }
+
+  /** 关闭池中所有Selector */
+  public void close() {
+    Selector selector;
+    while ((selector = selectors.poll()) != null) {
+      try {
+        selector.close();
+      } catch (IOException ignored) {
+        // 关闭时忽略
+      }
+    }
+  }
+}
@@ -12,6 +12,8 @@ public class HttpConstant {
   public static final byte LINE_FEED = 10;
   /** 空格 */
   public static final byte SPACE = 32;
+  /** 水平制表符 \t */
+  public static final byte HORIZONTAL_TAB = 9;
   /** 冒号 : */
   public static final byte COLON = 58;
 }
@@ -5,6 +5,8 @@ package server.constant;
  * @date 2020/6/9 15:23
  */
 public class HttpVersionConstant {
+  /** http 1.0版本* */
+  public static final String HTTP_1_0 = "HTTP/1.0";
   /** http 1.1版本* */
   public static final String HTTP_1_1 = "HTTP/1.1";
 }
@@ -0,0 +1,103 @@
+package server.context;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.config.ServerConfig;
+import server.connector.HttpConnector;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 同一个JVM中部署的所有web应用，共用连接器和工作线程。请求按最长的上下文路径匹配到应用。
+ *
+ * <p>根应用（上下文路径为空）的根目录是classpath下的webroot；server.contexts列出的其他应用用
+ * context.&lt;应用名&gt;.path和context.&lt;应用名&gt;.docBase指定上下文路径和根目录，
+ * context.&lt;应用名&gt;.&lt;key&gt;可以覆盖这个应用的static.*、servlet.*等配置。上下文路径为空的应用会替换默认的根应用
+ *
+ * @author zhout
+ * @date 2020/7/6 10:40
+ */
+public class ContextManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ContextManager.class);
+
+  /** 默认根应用的名字 */
+  private static final String ROOT = "ROOT";
+
+  /** 按上下文路径从长到短排列，第一个匹配的就是最长匹配 */
+  private final WebContext[] contexts;
+
+  public ContextManager(ServerConfig config) {
+    List<WebContext> list = new ArrayList<>();
+    boolean hasRoot = false;
+    for (String name : config.getString("server.contexts", "").split(",")) {
+      name = name.trim();
+      if (name.isEmpty()) {
+        continue;
+      }
+      String path = normalizePath(config.getString("context." + name + ".path", "/" + name));
+      String docBase = config.getString("context." + name + ".docBase", null);
+      if (docBase == null) {
+        throw new IllegalStateException("config context." + name + ".docBase is required");
+      }
+      for (WebContext context : list) {
+        if (context.getPath().equals(path)) {
+          throw new IllegalStateException("Duplicate context path: " + path);
+        }
+      }
+      hasRoot |= path.isEmpty();
+      list.add(new WebContext(name, path, new File(docBase), config.forContext(name)));
+    }
+    if (!hasRoot) {
+      list.add(
+          new WebContext(ROOT, "", new File(HttpConnector.WEB_PROJECT_ROOT), config.forContext(ROOT)));
+    }
+    list.sort(Comparator.comparingInt((WebContext context) -> context.getPath().length()).reversed());
+    this.contexts = list.toArray(new WebContext[0]);
+  }
+
+  /** 上下文路径统一成以'/'开头、不以'/'结尾，根路径为空字符串 */
+  private static String normalizePath(String path) {
+    while (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    return path.isEmpty() || path.startsWith("/") ? path : "/" + path;
+  }
+
+  /**
+   * 查找请求URI所属的应用
+   *
+   * @param uri 规范化之后的请求URI
+   * @return 应用，没有匹配的应用时返回null
+   */
+  public WebContext map(String uri) {
+    for (WebContext context : contexts) {
+      if (context.matches(uri)) {
+        return context;
+      }
+    }
+    return null;
+  }
+
+  /** 启动所有应用 */
+  public void start() {
+    for (WebContext context : contexts) {
+      context.start();
+      LOGGER.info(
+          "Context {} is deployed at '{}' from {}",
+          context.getName(),
+          context.getPath(),
+          context.getDocBase());
+    }
+  }
+
+  /** 销毁所有应用 */
+  public void destroy() {
+    for (WebContext context : contexts) {
+      context.destroy();
+    }
+  }
+}
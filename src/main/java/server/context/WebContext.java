@@ -0,0 +1,129 @@
+package server.context;
+
+import server.config.ServerConfig;
+import server.http.carrier.HttpRequest;
+import server.http.carrier.HttpResponse;
+import server.http.process.ServletProcess;
+import server.http.process.StaticResourceProcess;
+import server.servlet.MappingData;
+import server.session.SessionManager;
+
+import javax.servlet.MultipartConfigElement;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 一个web应用：上下文路径、根目录，以及自己的静态资源处理（含缓存）、Servlet处理（含类加载器）和会话管理。
+ * 请求URI去掉上下文路径之后再映射到Servlet或者静态资源
+ *
+ * @author zhout
+ * @date 2020/7/6 10:15
+ */
+public class WebContext {
+
+  /** 应用名，用于日志和配置 */
+  private final String name;
+
+  /** 上下文路径，根应用为空字符串，其他以'/'开头且不以'/'结尾 */
+  private final String path;
+
+  private final File docBase;
+
+  private final StaticResourceProcess staticResourceProcess;
+
+  private final ServletProcess servletProcess;
+
+  private final SessionManager sessionManager;
+
+  /** 没有@MultipartConfig的Servlet使用的上传配置 */
+  private final MultipartConfigElement multipartConfig;
+
+  /**
+   * 构造方法
+   *
+   * @param name 应用名
+   * @param path 上下文路径
+   * @param docBase 根目录
+   * @param config 应用的配置
+   */
+  public WebContext(String name, String path, File docBase, ServerConfig config) {
+    this.name = name;
+    this.path = path;
+    this.docBase = docBase;
+    this.staticResourceProcess = new StaticResourceProcess(config, docBase);
+    this.servletProcess = new ServletProcess(config, staticResourceProcess, docBase);
+    this.sessionManager = new SessionManager(name, config, servletProcess::getClassLoader);
+    this.multipartConfig = createMultipartConfig(config);
+  }
+
+  /**
+   * 读取应用的上传配置，大小限制小于0表示不限制
+   *
+   * @param config 应用的配置
+   * @return 上传配置
+   */
+  private static MultipartConfigElement createMultipartConfig(ServerConfig config) {
+    int maxFileSize = config.getInt("multipart.maxFileSizeMB", 200);
+    int maxRequestSize = config.getInt("multipart.maxRequestSizeMB", 256);
+    return new MultipartConfigElement(
+        config.getString("multipart.location", ""),
+        maxFileSize < 0 ? -1L : maxFileSize * 1024L * 1024L,
+        maxRequestSize < 0 ? -1L : maxRequestSize * 1024L * 1024L,
+        Math.max(0, config.getInt("multipart.fileSizeThresholdKB", 16)) * 1024);
+  }
+
+  /**
+   * URI是否属于这个应用
+   *
+   * @param uri 规范化之后的请求URI
+   * @return 是否属于
+   */
+  public boolean matches(String uri) {
+    return uri.startsWith(path)
+        && (uri.length() == path.length() || uri.charAt(path.length()) == '/');
+  }
+
+  /**
+   * 处理属于这个应用的请求
+   *
+   * @param request request对象
+   * @param response response对象
+   * @throws IOException IO异常
+   */
+  public void process(HttpRequest request, HttpResponse response) throws IOException {
+    request.setContextPath(path);
+    request.setSessionManager(sessionManager);
+    request.setMultipartConfig(multipartConfig);
+    String uri = request.getRequestURI().substring(path.length());
+    MappingData mapping = servletProcess.map(uri.isEmpty() ? "/" : uri);
+    if (mapping != null) {
+      servletProcess.process(request, response, mapping);
+    } else {
+      staticResourceProcess.process(request, response);
+    }
+  }
+
+  /** 预加载Servlet、开始监视类文件并启动会话过期检查 */
+  public void start() {
+    servletProcess.start();
+    sessionManager.start();
+  }
+
+  /** 销毁应用的所有Servlet和会话 */
+  public void destroy() {
+    servletProcess.destroy();
+    sessionManager.stop();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public File getDocBase() {
+    return docBase;
+  }
+}
@@ -0,0 +1,49 @@
+package server.enums;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 响应内容编码枚举，按优先级从高到低排列
+ *
+ * @author zhout
+ * @date 2020/7/13 10:15
+ */
+public enum ContentEncodingEnum {
+
+  /*gzip，可以使用预先压缩好的.gz文件*/
+  GZIP("gzip", ".gz"),
+  /*deflate，zlib格式*/
+  DEFLATE("deflate", null);
+
+  private String desc;
+
+  /** 预先压缩文件的后缀，不支持时为null */
+  private String suffix;
+
+  ContentEncodingEnum(String desc, String suffix) {
+    this.desc = desc;
+    this.suffix = suffix;
+  }
+
+  public String getDesc() {
+    return desc;
+  }
+
+  public String getSuffix() {
+    return suffix;
+  }
+
+  /**
+   * 包装出压缩输出流
+   *
+   * @param output 压缩结果写入的输出流
+   * @return 压缩输出流，关闭时写出剩余数据
+   * @throws IOException 创建出错
+   */
+  public OutputStream compress(OutputStream output) throws IOException {
+    return this == GZIP ? new GZIPOutputStream(output) : new DeflaterOutputStream(output);
+  }
+}
@@ -1,5 +1,6 @@
 package server.enums;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -16,18 +17,75 @@ public enum HTTPHeaderEnum {
   /*content-length*/
   CONTENT_LENGTH("content-length"),
   /*content-type*/
-  CONTENT_TYPE("content-type");
+  CONTENT_TYPE("content-type"),
+  /*connection*/
+  CONNECTION("connection"),
+  /*accept-encoding*/
+  ACCEPT_ENCODING("accept-encoding"),
+  /*if-none-match*/
+  IF_NONE_MATCH("if-none-match"),
+  /*if-modified-since*/
+  IF_MODIFIED_SINCE("if-modified-since"),
+  /*range*/
+  RANGE("range"),
+  /*if-range*/
+  IF_RANGE("if-range"),
+  /*host*/
+  HOST("host"),
+  /*user-agent*/
+  USER_AGENT("user-agent"),
+  /*accept*/
+  ACCEPT("accept"),
+  /*accept-language*/
+  ACCEPT_LANGUAGE("accept-language"),
+  /*referer*/
+  REFERER("referer"),
+  /*transfer-encoding*/
+  TRANSFER_ENCODING("transfer-encoding");
+
+  private static final HTTPHeaderEnum[] VALUES = values();
 
   private String desc;
 
+  /** 小写名字的ASCII字节，解析请求头时直接按字节比较 */
+  private final byte[] bytes;
+
   HTTPHeaderEnum(String desc) {
     this.desc = desc;
+    this.bytes = desc.getBytes(StandardCharsets.US_ASCII);
   }
 
   public String getDesc() {
     return desc;
   }
 
+  /**
+   * 按字节忽略大小写查找请求头名字，不创建字符串
+   *
+   * @param buf 字节数组
+   * @param start 名字起始位置
+   * @param end 名字结束位置（不包含）
+   * @return 对应的枚举，不是已知请求头时返回null
+   */
+  public static HTTPHeaderEnum lookup(byte[] buf, int start, int end) {
+    int length = end - start;
+    for (HTTPHeaderEnum header : VALUES) {
+      byte[] name = header.bytes;
+      if (name.length != length) {
+        continue;
+      }
+      int i = 0;
+      // 名字都是小写字母和'-'，大写字母或上0x20即可比较
+      while (i < length && (buf[start + i] | 0x20) == name[i]) {
+        i++;
+      }
+      if (i == length) {
+        return header;
+      }
+    }
+    return null;
+  }
+
   public static Optional<HTTPHeaderEnum> parse(String value) {
     return Stream.of(values()).filter(header -> header.getDesc().equals(value)).findAny();
   }
@@ -6,8 +6,11 @@ package server.enums;
  */
 public enum HTTPMethodEnum {
   GET,
+  HEAD,
   POST,
   PUT,
   DELETE,
-  OPTION;
+  OPTIONS,
+  TRACE,
+  PATCH;
 }
@@ -8,7 +8,25 @@ import java.util.stream.Stream;
  */
 public enum HttpStatusEnum {
   OK(200, "OK"),
-  NOT_FOUND(404, "File Not Found");
+  CREATED(201, "Created"),
+  ACCEPTED(202, "Accepted"),
+  NO_CONTENT(204, "No Content"),
+  PARTIAL_CONTENT(206, "Partial Content"),
+  MOVED_PERMANENTLY(301, "Moved Permanently"),
+  FOUND(302, "Found"),
+  SEE_OTHER(303, "See Other"),
+  NOT_MODIFIED(304, "Not Modified"),
+  TEMPORARY_REDIRECT(307, "Temporary Redirect"),
+  BAD_REQUEST(400, "Bad Request"),
+  UNAUTHORIZED(401, "Unauthorized"),
+  FORBIDDEN(403, "Forbidden"),
+  NOT_FOUND(404, "File Not Found"),
+  METHOD_NOT_ALLOWED(405, "Method Not Allowed"),
+  PAYLOAD_TOO_LARGE(413, "Payload Too Large"),
+  RANGE_NOT_SATISFIABLE(416, "Range Not Satisfiable"),
+  INTERNAL_SERVER_ERROR(500, "Internal Server Error"),
+  NOT_IMPLEMENTED(501, "Not Implemented"),
+  SERVICE_UNAVAILABLE(503, "Service Unavailable");
 
   private Integer status;
   private String desc;
@@ -0,0 +1,69 @@
+package server.http.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按请求路径决定静态资源的Cache-Control
+ *
+ * <p>配置格式为分号分隔的若干条规则，每条规则是“路径模式=Cache-Control值”，按书写顺序匹配，第一条匹配的规则生效。 路径模式支持：精确路径（/index.html）、
+ * 前缀（/image/*）、扩展名（*.js）和匹配所有路径的*。例如：
+ *
+ * <pre>
+ * /image/*=public, max-age=604800;*.css=max-age=86400;*=no-cache
+ * </pre>
+ *
+ * @author zhout
+ * @date 2020/7/14 11:20
+ */
+public class CacheControlPolicy {
+
+  /** 规则列表，每一项是{路径模式, Cache-Control值} */
+  private final List<String[]> rules = new ArrayList<>();
+
+  public CacheControlPolicy(String config) {
+    if (config == null) {
+      return;
+    }
+    for (String rule : config.split(";")) {
+      int equals = rule.indexOf('=');
+      if (equals <= 0) {
+        continue;
+      }
+      String pattern = rule.substring(0, equals).trim();
+      String value = rule.substring(equals + 1).trim();
+      if (!pattern.isEmpty() && !value.isEmpty()) {
+        rules.add(new String[] {pattern, value});
+      }
+    }
+  }
+
+  /**
+   * 查找路径对应的Cache-Control
+   *
+   * @param uri 规范化之后的请求URI
+   * @return Cache-Control的值，没有匹配的规则时返回null
+   */
+  public String lookup(String uri) {
+    for (String[] rule : rules) {
+      if (matches(rule[0], uri)) {
+        return rule[1];
+      }
+    }
+    return null;
+  }
+
+  private static boolean matches(String pattern, String uri) {
+    if ("*".equals(pattern)) {
+      return true;
+    }
+    if (pattern.startsWith("*.")) {
+      return uri.endsWith(pattern.substring(1));
+    }
+    if (pattern.endsWith("/*")) {
+      String prefix = pattern.substring(0, pattern.length() - 2);
+      return uri.equals(prefix) || uri.startsWith(prefix + "/");
+    }
+    return pattern.equals(uri);
+  }
+}
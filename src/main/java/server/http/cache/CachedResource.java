@@ -0,0 +1,378 @@
+package server.http.cache;
+
+import server.enums.ContentEncodingEnum;
+import server.util.BufferUtil;
+import server.util.DateUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存的静态资源：文件内容放在直接内存中，写到Socket时不需要再从堆复制一次； 除状态行和Connection之外的响应头预先生成好，请求时直接输出。
+ *
+ * <p>大文件可以用{@link FileChannel#map}映射到内存，多个请求共用同一个映射，内容由操作系统的页缓存提供，不占用Java内存。
+ * 压缩后的内容也作为一个独立的资源缓存，和未压缩的版本各自带有Content-Encoding和ETag。 304响应的响应头也预先生成。
+ *
+ * <p>内容和响应头缓冲区是只读的，每次输出都取一个独立的副本，多个线程可以同时使用同一个实例。 实例带有引用计数：缓存持有一个引用，
+ * 每个正在输出的请求持有一个引用，最后一个引用释放时才释放直接内存或解除映射，避免访问已经释放的内存。
+ *
+ * @author zhout
+ * @date 2020/7/10 10:20
+ */
+public class CachedResource {
+
+  /** 内容对应的文件，动态压缩时是压缩前的文件 */
+  private final File file;
+
+  /** 加载时文件的最后修改时间 */
+  private final long lastModified;
+
+  /** 加载时文件的大小，用于核对文件是否变化 */
+  private final long fileLength;
+
+  /** 响应体长度 */
+  private final long length;
+
+  private final String etag;
+
+  private final String contentType;
+
+  /** 内容编码，未压缩时为null */
+  private final ContentEncodingEnum encoding;
+
+  /** 校验和缓存相关的响应头，生成206响应时使用 */
+  private final String validators;
+
+  private final ByteBuffer headers;
+
+  /** 304响应的响应头，只包含校验和缓存相关的部分 */
+  private final ByteBuffer notModifiedHeaders;
+
+  private final ByteBuffer content;
+
+  /** 直接分配或文件映射得到的原始缓冲区，释放时使用 */
+  private final ByteBuffer buffer;
+
+  /** 内容是否来自文件映射 */
+  private final boolean mapped;
+
+  /** 引用计数，降为0后不能再使用 */
+  private final AtomicInteger references = new AtomicInteger(1);
+
+  /** 上一次和文件系统核对的时间 */
+  private volatile long checkedAt;
+
+  private CachedResource(
+      File file,
+      long lastModified,
+      long fileLength,
+      ByteBuffer content,
+      boolean mapped,
+      String contentType,
+      ContentEncodingEnum encoding,
+      boolean vary,
+      String cacheControl) {
+    this.file = file;
+    this.lastModified = lastModified;
+    this.fileLength = fileLength;
+    this.buffer = content;
+    this.mapped = mapped;
+    this.length = content.remaining();
+    this.etag = etag(fileLength, lastModified, encoding);
+    this.content = content.asReadOnlyBuffer();
+    this.contentType = contentType;
+    this.encoding = encoding;
+    this.validators = validatorHeaders(etag, lastModified, vary, cacheControl);
+    StringBuilder header =
+        new StringBuilder()
+            .append("Content-Type: ")
+            .append(contentType)
+            .append("\r\nContent-Length: ")
+            .append(length)
+            .append("\r\n");
+    if (encoding != null) {
+      header.append("Content-Encoding: ").append(encoding.getDesc()).append("\r\n");
+    } else {
+      // 只对未压缩的内容支持Range
+      header.append("Accept-Ranges: bytes\r\n");
+    }
+    header.append(validators);
+    this.headers = toDirectBuffer(header.toString().getBytes(StandardCharsets.ISO_8859_1));
+    this.notModifiedHeaders = toDirectBuffer(validators.getBytes(StandardCharsets.ISO_8859_1));
+    this.checkedAt = System.currentTimeMillis();
+  }
+
+  /**
+   * 生成弱ETag。同一个文件的不同编码是不同的表示，ETag不能相同
+   *
+   * @param fileLength 文件大小
+   * @param lastModified 文件最后修改时间
+   * @param encoding 内容编码，未压缩时为null
+   * @return ETag
+   */
+  public static String etag(long fileLength, long lastModified, ContentEncodingEnum encoding) {
+    return "W/\""
+        + fileLength
+        + "-"
+        + lastModified
+        + (encoding != null ? "-" + encoding.getDesc() : "")
+        + "\"";
+  }
+
+  /**
+   * 生成校验和缓存相关的响应头，200和304响应共用
+   *
+   * @param etag ETag
+   * @param lastModified 文件最后修改时间
+   * @param vary 是否输出Vary: Accept-Encoding
+   * @param cacheControl Cache-Control的值，null表示不输出
+   * @return 每行以CRLF结尾的响应头
+   */
+  public static String validatorHeaders(
+      String etag, long lastModified, boolean vary, String cacheControl) {
+    StringBuilder header = new StringBuilder();
+    if (vary) {
+      header.append("Vary: Accept-Encoding\r\n");
+    }
+    header
+        .append("ETag: ")
+        .append(etag)
+        .append("\r\nLast-Modified: ")
+        .append(DateUtil.formatHttpDate(lastModified))
+        .append("\r\n");
+    if (cacheControl != null) {
+      header.append("Cache-Control: ").append(cacheControl).append("\r\n");
+    }
+    return header.toString();
+  }
+
+  /**
+   * 把文件完整读入直接内存
+   *
+   * @param file 资源文件，预先压缩的文件按encoding声明编码
+   * @param contentType 响应的Content-Type
+   * @param encoding 文件内容的编码，未压缩时为null
+   * @param vary 是否输出Vary: Accept-Encoding
+   * @param cacheControl Cache-Control的值，null表示不输出
+   * @return 缓存的资源
+   * @throws IOException 读取出错
+   */
+  public static CachedResource load(
+      File file,
+      String contentType,
+      ContentEncodingEnum encoding,
+      boolean vary,
+      String cacheControl)
+      throws IOException {
+    // 先取修改时间再读内容，读取期间文件被修改时下次核对会发现并重新加载
+    long lastModified = file.lastModified();
+    ByteBuffer content = read(file, true);
+    return new CachedResource(
+        file,
+        lastModified,
+        content.remaining(),
+        content,
+        false,
+        contentType,
+        encoding,
+        vary,
+        cacheControl);
+  }
+
+  /**
+   * 把文件以只读方式映射到内存，映射在关闭文件通道后仍然有效
+   *
+   * @param file 资源文件
+   * @param contentType 响应的Content-Type
+   * @param vary 是否输出Vary: Accept-Encoding
+   * @param cacheControl Cache-Control的值，null表示不输出
+   * @return 缓存的资源
+   * @throws IOException 映射出错
+   */
+  public static CachedResource map(
+      File file, String contentType, boolean vary, String cacheControl) throws IOException {
+    long lastModified = file.lastModified();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File is too large to map: " + file);
+      }
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return new CachedResource(
+          file, lastModified, size, mapped, true, contentType, null, vary, cacheControl);
+    }
+  }
+
+  /**
+   * 读取文件并压缩，压缩结果放入直接内存
+   *
+   * @param file 资源文件
+   * @param contentType 响应的Content-Type
+   * @param encoding 压缩算法
+   * @param cacheControl Cache-Control的值，null表示不输出
+   * @return 缓存的资源，核对修改时间时仍以原文件为准
+   * @throws IOException 读取或压缩出错
+   */
+  public static CachedResource compress(
+      File file, String contentType, ContentEncodingEnum encoding, String cacheControl)
+      throws IOException {
+    long lastModified = file.lastModified();
+    byte[] source = read(file, false).array();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(source.length / 2 + 64);
+    try (OutputStream output = encoding.compress(compressed)) {
+      output.write(source);
+    }
+    return new CachedResource(
+        file,
+        lastModified,
+        source.length,
+        toDirectBuffer(compressed.toByteArray()),
+        false,
+        contentType,
+        encoding,
+        true,
+        cacheControl);
+  }
+
+  /**
+   * 读取文件的全部内容
+   *
+   * @param file 文件
+   * @param direct 是否读入直接内存
+   * @return 已切换到读模式的文件内容
+   * @throws IOException 读取出错
+   */
+  private static ByteBuffer read(File file, boolean direct) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File is too large to cache: " + file);
+      }
+      ByteBuffer content =
+          direct ? ByteBuffer.allocateDirect((int) size) : ByteBuffer.allocate((int) size);
+      while (content.hasRemaining()) {
+        if (channel.read(content) < 0) {
+          throw new EOFException("File is truncated while loading: " + file);
+        }
+      }
+      content.flip();
+      return content;
+    }
+  }
+
+  private static ByteBuffer toDirectBuffer(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    return buffer;
+  }
+
+  /**
+   * 增加一个引用
+   *
+   * @return 是否成功，实例已经被释放时返回false
+   */
+  public boolean acquire() {
+    int count;
+    do {
+      count = references.get();
+      if (count <= 0) {
+        return false;
+      }
+    } while (!references.compareAndSet(count, count + 1));
+    return true;
+  }
+
+  /** 释放一个引用，最后一个引用释放时释放直接内存或解除文件映射 */
+  public void release() {
+    if (references.decrementAndGet() == 0) {
+      BufferUtil.free(buffer);
+    }
+  }
+
+  /**
+   * 距离上次核对超过指定间隔时，检查文件的修改时间和大小是否变化
+   *
+   * @param interval 核对间隔（毫秒）
+   * @return 缓存内容是否仍然有效
+   */
+  boolean revalidate(long interval) {
+    long now = System.currentTimeMillis();
+    if (now - checkedAt < interval) {
+      return true;
+    }
+    if (file.lastModified() != lastModified || file.length() != fileLength) {
+      return false;
+    }
+    checkedAt = now;
+    return true;
+  }
+
+  public boolean isMapped() {
+    return mapped;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public ContentEncodingEnum getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * 校验和缓存相关的响应头，包括Vary、ETag、Last-Modified和Cache-Control
+   *
+   * @return 每行以CRLF结尾的响应头
+   */
+  public String getValidators() {
+    return validators;
+  }
+
+  /**
+   * 预先生成的响应头，包括Content-Type、Content-Length、ETag和Last-Modified等，每行以CRLF结尾
+   *
+   * @return 独立的只读副本
+   */
+  public ByteBuffer headers() {
+    return headers.duplicate();
+  }
+
+  /**
+   * 预先生成的304响应头，包括Vary、ETag、Last-Modified和Cache-Control
+   *
+   * @return 独立的只读副本
+   */
+  public ByteBuffer notModifiedHeaders() {
+    return notModifiedHeaders.duplicate();
+  }
+
+  /**
+   * 响应体内容
+   *
+   * @return 独立的只读副本
+   */
+  public ByteBuffer content() {
+    return content.duplicate();
+  }
+}
@@ -0,0 +1,128 @@
+package server.http.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 静态资源缓存，以规范化之后的请求URI为key，按最近最少使用淘汰
+ *
+ * <p>所有缓存内容的总大小不超过maxSize，大于maxEntrySize的文件不缓存。 缓存项每隔revalidateInterval毫秒才和文件系统核对一次修改时间，
+ * 命中时不访问文件系统。
+ *
+ * <p>同一个文件的压缩版本以不同的key缓存。被淘汰的资源在最后一个请求输出完毕后才释放内存或解除映射，
+ * 从缓存取得和放入缓存返回的资源都已经持有一个引用，使用完毕后必须调用{@link CachedResource#release()}。
+ *
+ * @author zhout
+ * @date 2020/7/10 10:40
+ */
+public class StaticResourceCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StaticResourceCache.class);
+
+  /** 缓存总大小上限（字节） */
+  private final long maxSize;
+
+  /** 单个文件大小上限（字节） */
+  private final long maxEntrySize;
+
+  /** 和文件系统核对修改时间的间隔（毫秒） */
+  private final long revalidateInterval;
+
+  /** 按访问顺序排列，最久未访问的在最前面 */
+  private final LinkedHashMap<String, CachedResource> resources =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  /** 当前缓存的总大小 */
+  private long size;
+
+  public StaticResourceCache(long maxSize, long maxEntrySize, long revalidateInterval) {
+    this.maxSize = maxSize;
+    this.maxEntrySize = Math.min(Math.min(maxEntrySize, maxSize), Integer.MAX_VALUE);
+    this.revalidateInterval = revalidateInterval;
+  }
+
+  /**
+   * 查找缓存，文件已经被修改或删除时移除缓存项
+   *
+   * @param key 规范化之后的请求URI，压缩版本带上编码后缀
+   * @return 已持有引用的缓存资源，没有命中时返回null
+   */
+  public CachedResource get(String key) {
+    CachedResource resource;
+    synchronized (this) {
+      resource = resources.get(key);
+      if (resource == null) {
+        return null;
+      }
+      // 在锁内取得引用，淘汰时释放的只是缓存自己的引用
+      resource.acquire();
+    }
+    if (!resource.revalidate(revalidateInterval)) {
+      LOGGER.debug("Static resource {} is modified, evict it.", key);
+      resource.release();
+      remove(key, resource);
+      return null;
+    }
+    return resource;
+  }
+
+  /**
+   * 指定大小的内容能否放入缓存
+   *
+   * @param length 内容大小
+   * @return 是否不超过单个文件大小上限
+   */
+  public boolean isCacheable(long length) {
+    return length <= maxEntrySize;
+  }
+
+  /**
+   * 放入缓存，超过单个文件大小上限时不缓存
+   *
+   * @param key 规范化之后的请求URI，压缩版本带上编码后缀
+   * @param resource 新加载的资源，调用方持有的引用保持不变
+   * @return 传入的资源
+   */
+  public CachedResource put(String key, CachedResource resource) {
+    if (isCacheable(resource.getLength()) && resource.acquire()) {
+      add(key, resource);
+    }
+    return resource;
+  }
+
+  private synchronized void add(String key, CachedResource resource) {
+    CachedResource old = resources.put(key, resource);
+    if (old != null) {
+      size -= old.getLength();
+      old.release();
+    }
+    size += resource.getLength();
+    Iterator<Map.Entry<String, CachedResource>> eldest = resources.entrySet().iterator();
+    while (size > maxSize && eldest.hasNext()) {
+      Map.Entry<String, CachedResource> entry = eldest.next();
+      size -= entry.getValue().getLength();
+      eldest.remove();
+      entry.getValue().release();
+    }
+  }
+
+  private synchronized void remove(String key, CachedResource resource) {
+    if (resources.remove(key, resource)) {
+      size -= resource.getLength();
+      resource.release();
+    }
+  }
+
+  /**
+   * 当前缓存的总大小
+   *
+   * @return 字节数
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+}
@@ -1,10 +1,19 @@
 package server.http.carrier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.enums.HTTPHeaderEnum;
 import server.enums.HTTPMethodEnum;
+import server.http.carrier.facade.HttpRequestFacade;
+import server.http.multipart.MultipartParser;
+import server.http.multipart.StandardPart;
+import server.http.parser.Parameters;
+import server.http.parser.RequestHeaders;
 import server.http.stream.RequestStream;
+import server.session.SessionManager;
+import server.session.StandardSession;
+import server.util.DateUtil;
 import server.util.Enumerator;
-import server.util.ParameterMap;
-import server.util.RequestUtil;
 import server.util.StringUtil;
 
 import javax.servlet.*;
@@ -12,10 +21,10 @@ import javax.servlet.http.*;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -24,6 +33,13 @@ import java.util.*;
  */
 public class HttpRequest implements HttpServletRequest {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpRequest.class);
+
+  /** 解析表单参数时允许的最大请求体 */
+  private static final int MAX_POST_SIZE = 2 * 1024 * 1024;
+
+  private static final String MULTIPART_FORM_DATA = "multipart/form-data";
+
   /** Socket客户端输入流 */
   private InputStream input;
 
@@ -45,45 +61,62 @@ public class HttpRequest implements HttpServletRequest {
   /** HTTP请求URI */
   private String requestURI;
 
-  /** POST请求表单参数 */
-  private String postParams;
+  /** 请求内容长度，-1表示请求没有携带Content-Length */
+  private long contentLength = -1;
 
-  /** 请求内容长度 */
-  private int contentLength;
+  /** 请求体是否使用chunked传输编码 */
+  private boolean chunked;
 
   /** 请求内容类型 */
   private String contentType;
 
+  /** 请求体的字符编码，为null时按ISO-8859-1处理 */
+  private String characterEncoding;
+
   /** 该请求关联的Cookie列表 */
   protected ArrayList<Cookie> cookies = new ArrayList<>();
 
-  /** 与此请求关联的HTTP请求头，key:请求头名称 value:请求头内容数组 */
-  protected HashMap<String, ArrayList<String>> headers = new HashMap<>();
+  /** 与此请求关联的HTTP请求头，由请求解析器填充 */
+  protected RequestHeaders headers;
 
   /** jsessionid是否从cookie携带 */
   private boolean requestedSessionCookie;
 
+  /** 所属web应用的会话管理 */
+  private SessionManager sessionManager;
+
+  /** 对应的响应，创建会话时需要输出Set-Cookie */
+  private HttpResponse response;
+
+  /** 本次请求使用的会话 */
+  private StandardSession session;
+
+  /** 是否已经按请求携带的jsessionid查找过会话，每个请求只记录一次访问 */
+  private boolean sessionChecked;
+
   /** 用于返回空枚举的空集合。请不要在此集合中添加任何元素~ */
   protected static ArrayList empty = new ArrayList();
 
-  /** getDateHeader()方法中使用到的日期格式 */
-  protected SimpleDateFormat[] formats = {
-    new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US),
-    new SimpleDateFormat("EEEEEE, dd-MMM-yy HH:mm:ss zzz", Locale.US),
-    new SimpleDateFormat("EEE MMMM d HH:mm:ss yyyy", Locale.US)
-  };
-
-  /**
-   * 该请求的解析参数。只有在通过getParameter()系列方法调用的系列中请求参数信息时，才会填充该信息 key是参数名，而value是该参数的的字符串数组。
-   * 一旦对特定请求的参数进行解析并存储在这里，它们就不会被修改。因此，对参数的应用程序级别访问不需要同步。
-   */
-  protected ParameterMap parameters;
+  /** 该请求的查询参数和表单参数，第一次通过getParameter()系列方法读取时才解析，名字和值在第一次被访问时才解码 */
+  protected final Parameters parameters = new Parameters();
 
   /** 标识本次请求的参数是否解析完毕 */
   protected boolean parsed = false;
 
+  /** multipart请求的上传配置，由web应用或者Servlet的@MultipartConfig提供，为null时不解析multipart请求体 */
+  private MultipartConfigElement multipartConfig;
+
+  /** 解析出的multipart部分，还没有解析时为null */
+  private List<StandardPart> parts;
+
+  /** 解析multipart请求体时的异常，之后每次获取部分都抛出 */
+  private Exception partsException;
+
   protected String pathInfo;
 
+  /** 匹配到Servlet的路径 */
+  private String servletPath;
+
   /** 这个请求的上下文路径 */
   protected String contextPath = "";
 
@@ -96,11 +129,79 @@ public class HttpRequest implements HttpServletRequest {
   /** 封装的Socket InputStream (Servlet版本） */
   protected ServletInputStream stream;
 
-  /** 构造方法 */
-  public HttpRequest(InputStream input) {
+  /** 请求体流，按Content-Length或chunked分帧 */
+  private RequestStream body;
+
+  /** 交给Servlet的外观对象，第一次使用时创建 */
+  private HttpRequestFacade facade;
+
+  /** 回收时是否丢弃外观对象，丢弃后Servlet保留的旧外观对象不能访问下一个请求 */
+  private final boolean discardFacade;
+
+  /**
+   * 构造方法。实例属于HttpProcess，每个请求处理完毕后调用{@link #recycle()}，在同一个HttpProcess处理的请求之间复用
+   *
+   * @param discardFacade 回收时是否丢弃外观对象
+   */
+  public HttpRequest(boolean discardFacade) {
+    this.discardFacade = discardFacade;
+  }
+
+  /**
+   * 设置连接输入流，每个请求开始时调用
+   *
+   * @param input 连接输入流
+   */
+  public void setInput(InputStream input) {
     this.input = input;
   }
 
+  /** 交给Servlet的外观对象 */
+  public HttpRequestFacade getFacade() {
+    if (facade == null) {
+      facade = new HttpRequestFacade(this);
+    }
+    return facade;
+  }
+
+  /** 清空本次请求的全部状态，删除上传的临时文件，准备处理下一个请求 */
+  public void recycle() {
+    releaseParts();
+    if (facade != null && discardFacade) {
+      facade.clear();
+      facade = null;
+    }
+    input = null;
+    method = null;
+    protocol = null;
+    queryString = null;
+    requestedSessionId = null;
+    requestedSessionURL = false;
+    requestedSessionCookie = false;
+    requestURI = null;
+    contentLength = -1;
+    chunked = false;
+    contentType = null;
+    characterEncoding = null;
+    cookies.clear();
+    headers = null;
+    sessionManager = null;
+    session = null;
+    sessionChecked = false;
+    parameters.recycle();
+    parsed = false;
+    multipartConfig = null;
+    parts = null;
+    partsException = null;
+    pathInfo = null;
+    servletPath = null;
+    contextPath = "";
+    serverName = null;
+    reader = null;
+    stream = null;
+    body = null;
+  }
+
   /** HTTP请求方法 */
   public void setMethod(String method) {
     this.method = method;
@@ -131,6 +232,44 @@ public class HttpRequest implements HttpServletRequest {
     this.requestURI = requestURI;
   }
 
+  /**
+   * 设置请求所属web应用的上下文路径
+   *
+   * @param contextPath 上下文路径，根应用为空字符串
+   */
+  public void setContextPath(String contextPath) {
+    this.contextPath = contextPath;
+  }
+
+  /**
+   * 设置所属web应用的会话管理
+   *
+   * @param sessionManager 会话管理
+   */
+  public void setSessionManager(SessionManager sessionManager) {
+    this.sessionManager = sessionManager;
+  }
+
+  /**
+   * 设置对应的响应
+   *
+   * @param response 响应
+   */
+  public void setResponse(HttpResponse response) {
+    this.response = response;
+  }
+
+  /**
+   * 设置映射到的Servlet路径
+   *
+   * @param servletPath Servlet路径
+   * @param pathInfo Servlet路径之后剩余的部分，没有时为null
+   */
+  public void setServletPath(String servletPath, String pathInfo) {
+    this.servletPath = servletPath;
+    this.pathInfo = pathInfo;
+  }
+
   /**
    * 设置本次请求的jsessionid是否为cookie携带传入
    *
@@ -141,27 +280,28 @@ public class HttpRequest implements HttpServletRequest {
   }
 
   /**
-   * 添加请求头
+   * 设置请求头
    *
-   * @param name 请求头key
-   * @param value 请求头内容
+   * @param headers 解析器解析出的请求头
    */
-  public void addHeader(String name, String value) {
-    name = name.toLowerCase();
-    ArrayList<String> values = headers.computeIfAbsent(name, k -> new ArrayList<>());
-    values.add(value);
-  }
-
-  /** POST请求表单参数 */
-  public void setPostParams(String postParams) {
-    this.postParams = postParams;
+  public void setHeaders(RequestHeaders headers) {
+    this.headers = headers;
   }
 
   /** 请求内容长度 */
-  public void setContentLength(int length) {
+  public void setContentLength(long length) {
     this.contentLength = length;
   }
 
+  /** 请求体是否使用chunked传输编码 */
+  public void setChunked(boolean chunked) {
+    this.chunked = chunked;
+  }
+
+  public boolean isChunked() {
+    return chunked;
+  }
+
   /** 请求内容类型 */
   public void setContentType(String type) {
     this.contentType = type;
@@ -172,27 +312,19 @@ public class HttpRequest implements HttpServletRequest {
     cookies.add(cookie);
   }
 
-  public String getPostParams() {
-    return postParams;
-  }
-
-  /** 如果本次请求参数并未解析，如果在URI和POST表单中都存在参数， 则将它们合并，最后放入ParameterMap中 */
+  /** 如果本次请求参数并未解析，则依次扫描URI中的查询参数和POST表单参数，同名的参数合并 */
   protected void parseParameters() {
     if (parsed) {
       return;
     }
-    ParameterMap results = parameters;
-    if (results == null) {
-      results = new ParameterMap();
-    }
-    results.setLocked(false);
-    String encoding = getCharacterEncoding();
-    if (encoding == null) {
-      encoding = StringUtil.ISO_8859_1;
-    }
-    // 解析URI携带的请求参数
+    parsed = true;
+    parameters.setEncoding(getCharacterEncoding());
+    // 查询字符串由请求行按ISO-8859-1转换而来，转回字节不会丢失信息
     String queryString = getQueryString();
-    RequestUtil.parseParameters(results, queryString, encoding);
+    if (queryString != null) {
+      byte[] query = queryString.getBytes(StandardCharsets.ISO_8859_1);
+      parameters.addBytes(query, 0, query.length);
+    }
 
     // 初始化Content-Type的值
     String contentType = getContentType();
@@ -207,15 +339,171 @@ public class HttpRequest implements HttpServletRequest {
     }
     // 解析POST请求的表单参数
     if (HTTPMethodEnum.POST.name().equals(getMethod())
-        && getContentLength() > 0
-        && "application/x-www-form-urlencoded".equals(contentType)) {
-      RequestUtil.parseParameters(results, getPostParams(), encoding);
+        && (getContentLengthLong() > 0 || chunked)
+        && "application/x-www-form-urlencoded".equalsIgnoreCase(contentType)) {
+      byte[] form = readPostBody();
+      if (form != null) {
+        parameters.addBytes(form, 0, form.length);
+      }
+    } else if (multipartConfig != null && MULTIPART_FORM_DATA.equalsIgnoreCase(contentType)) {
+      addFormFields();
+    }
+  }
+
+  /** multipart请求中的普通表单字段也作为请求参数，过大的字段不放入参数 */
+  private void addFormFields() {
+    try {
+      parseParts();
+      for (StandardPart part : parts) {
+        if (part.getSubmittedFileName() == null && part.getSize() <= MAX_POST_SIZE) {
+          parameters.add(part.getName(), part.getString(getCharacterEncoding()));
+        }
+      }
+    } catch (IOException | ServletException | IllegalStateException e) {
+      LOGGER.info("Parse multipart body is fail, form fields are ignored.", e);
     }
+  }
 
-    // 解析完毕就锁定
-    results.setLocked(true);
-    parsed = true;
-    parameters = results;
+  /**
+   * 流式解析multipart/form-data请求体，只解析一次
+   *
+   * @throws IOException 格式错误、请求体不完整或者写临时文件出错
+   * @throws ServletException 请求不是multipart/form-data
+   * @throws IllegalStateException 没有上传配置、超过大小限制或者请求体已经被读取
+   */
+  private void parseParts() throws IOException, ServletException {
+    if (parts != null) {
+      return;
+    }
+    if (partsException != null) {
+      rethrowPartsException();
+    }
+    String contentType = getContentType();
+    String mimeType = contentType == null ? "" : contentType;
+    int semicolon = mimeType.indexOf(';');
+    if (semicolon >= 0) {
+      mimeType = mimeType.substring(0, semicolon);
+    }
+    if (!MULTIPART_FORM_DATA.equalsIgnoreCase(mimeType.trim())) {
+      throw new ServletException("Content-Type is not multipart/form-data");
+    }
+    if (multipartConfig == null) {
+      throw new IllegalStateException("No multipart config is provided");
+    }
+    try {
+      if (stream != null || reader != null) {
+        throw new IllegalStateException("Request body has been read");
+      }
+      String boundary = MultipartParser.parseBoundary(contentType);
+      if (boundary == null) {
+        throw new IOException("Multipart boundary is missing or invalid!");
+      }
+      // Content-Length已经超过限制时不读取请求体
+      long maxRequestSize = multipartConfig.getMaxRequestSize();
+      if (maxRequestSize >= 0 && getContentLengthLong() > maxRequestSize) {
+        throw new IllegalStateException(
+            "Multipart request exceeds the maximum request size " + maxRequestSize);
+      }
+      MultipartParser parser =
+          new MultipartParser(getBody(), boundary, multipartConfig, getCharacterEncoding());
+      parts = parser.parse();
+    } catch (IOException | IllegalStateException e) {
+      partsException = e;
+      throw e;
+    }
+  }
+
+  private void rethrowPartsException() throws IOException {
+    if (partsException instanceof IOException) {
+      throw (IOException) partsException;
+    }
+    throw (IllegalStateException) partsException;
+  }
+
+  /** 删除multipart部分的临时文件，请求结束时调用 */
+  public void releaseParts() {
+    if (parts != null) {
+      for (StandardPart part : parts) {
+        part.release();
+      }
+    }
+  }
+
+  public void setMultipartConfig(MultipartConfigElement multipartConfig) {
+    this.multipartConfig = multipartConfig;
+  }
+
+  /**
+   * 读取表单请求体。请求体已经被servlet通过流读取、或者超过{@link #MAX_POST_SIZE}时不解析；chunked请求体长度未知，
+   * 一直读到最后一个块，超过上限时同样不解析
+   *
+   * @return 请求体字节，不解析时返回null
+   */
+  private byte[] readPostBody() {
+    if (stream != null || reader != null) {
+      return null;
+    }
+    long length = chunked ? -1 : getContentLengthLong();
+    if (length > MAX_POST_SIZE) {
+      LOGGER.warn("Form body of {} bytes exceeds {}, parameters are ignored.", length, MAX_POST_SIZE);
+      return null;
+    }
+    byte[] bytes = new byte[length < 0 ? 256 : (int) length];
+    int offset = 0;
+    // 直接读取共用的请求体流，不关闭也不占用getInputStream/getReader，servlet之后仍然可以获取（已经读完的）请求体
+    try {
+      RequestStream input = getBody();
+      while (length < 0 || offset < length) {
+        if (offset == bytes.length) {
+          // 只有chunked请求体会走到这里
+          if (offset == MAX_POST_SIZE) {
+            if (input.read() < 0) {
+              break;
+            }
+            LOGGER.warn("Chunked form body exceeds {}, parameters are ignored.", MAX_POST_SIZE);
+            return null;
+          }
+          bytes = Arrays.copyOf(bytes, Math.min(offset << 1, MAX_POST_SIZE));
+        }
+        int read = input.read(bytes, offset, bytes.length - offset);
+        if (read < 0) {
+          if (length < 0) {
+            break;
+          }
+          LOGGER.info("Form body is incomplete, parameters are ignored.");
+          return null;
+        }
+        offset += read;
+      }
+    } catch (IOException e) {
+      LOGGER.info("Read form body is fail.", e);
+      return null;
+    }
+    return offset == bytes.length ? bytes : Arrays.copyOf(bytes, offset);
+  }
+
+  /**
+   * 请求处理完毕，丢弃servlet没有读取的请求体，保证长连接上的下一个请求从正确的位置开始
+   *
+   * @param maxSwallowSize 最多丢弃的字节数
+   * @return 请求体是否已经全部读完，剩余部分超过maxSwallowSize时返回false，连接不能再复用
+   * @throws IOException 读取出错或请求体不完整
+   */
+  public boolean finishRequest(int maxSwallowSize) throws IOException {
+    if (body == null && !chunked && contentLength <= 0) {
+      // 没有请求体，不需要创建请求体流
+      return true;
+    }
+    RequestStream body = getBody();
+    return body.isClosed() || body.swallow(maxSwallowSize);
+  }
+
+  /** 请求体流，getInputStream和getReader共用，保证丢弃剩余请求体时从正确的位置开始 */
+  private RequestStream getBody() throws IOException {
+    if (body == null) {
+      body = (RequestStream) createInputStream();
+    }
+    return body;
   }
 
   /**
@@ -247,20 +535,12 @@ public class HttpRequest implements HttpServletRequest {
     if (value == null) {
       return (-1L);
     }
-    // Work around a bug in SimpleDateFormat in pre-JDK1.2b4
-    // (Bug Parade bug #4106807)
-    value += " ";
-
-    // Attempt to convert the date header in a variety of formats
-    for (SimpleDateFormat format : formats) {
-      try {
-        Date date = format.parse(value);
-        return (date.getTime());
-      } catch (ParseException e) {
-        e.printStackTrace();
-      }
+    // DateUtil线程安全，不需要每个请求创建日期格式
+    long date = DateUtil.parseHttpDate(value);
+    if (date < 0) {
+      throw new IllegalArgumentException(value);
     }
-    throw new IllegalArgumentException(value);
+    return date;
   }
 
   /**
@@ -271,15 +551,17 @@ public class HttpRequest implements HttpServletRequest {
    */
   @Override
   public synchronized String getHeader(String name) {
-    if (name != null) {
-      name = name.toLowerCase();
-    }
-    ArrayList<String> values = headers.get(name);
-    if (values != null) {
-      return values.get(0);
-    } else {
-      return null;
-    }
+    return headers.getHeader(name);
+  }
+
+  /**
+   * 获取已知请求头的值，按枚举比较，不需要比较名字
+   *
+   * @param header 请求头
+   * @return 请求头值
+   */
+  public synchronized String getHeader(HTTPHeaderEnum header) {
+    return headers.getHeader(header);
   }
 
   /**
@@ -290,19 +572,13 @@ public class HttpRequest implements HttpServletRequest {
    */
   @Override
   public Enumeration<String> getHeaders(String name) {
-    name = name.toLowerCase();
-    ArrayList<String> values = headers.get(name);
-    if (values != null) {
-      return new Enumerator<>(values);
-    } else {
-      return new Enumerator<>(empty);
-    }
+    return new Enumerator<>(headers.getHeaders(name));
   }
 
   /** 获取所有请求头的名字集合 */
   @Override
   public Enumeration getHeaderNames() {
-    return new Enumerator<>(headers.keySet());
+    return new Enumerator<>(headers.getNames());
   }
 
   @Override
@@ -372,27 +648,64 @@ public class HttpRequest implements HttpServletRequest {
 
   @Override
   public String getServletPath() {
-    return null;
+    return servletPath;
   }
 
+  /**
+   * 获取本次请求的会话。先按请求携带的jsessionid查找，找不到且需要创建时新建会话，并通过Set-Cookie告知客户端
+   *
+   * @param create 没有会话时是否创建
+   * @return 会话，不存在且不创建时返回null
+   */
   @Override
-  public HttpSession getSession(boolean b) {
-    return null;
+  public HttpSession getSession(boolean create) {
+    if (session != null && session.isValid()) {
+      return session;
+    }
+    session = null;
+    if (sessionManager == null) {
+      return null;
+    }
+    if (!sessionChecked) {
+      sessionChecked = true;
+      session = sessionManager.find(requestedSessionId);
+      if (session != null) {
+        return session;
+      }
+    }
+    if (!create) {
+      return null;
+    }
+    if (response != null && response.isCommitted()) {
+      throw new IllegalStateException("Cannot create a session after the response has been committed");
+    }
+    session = sessionManager.create();
+    if (response != null) {
+      Cookie cookie = new Cookie(SessionManager.COOKIE_NAME, session.getId());
+      cookie.setPath(contextPath.isEmpty() ? "/" : contextPath);
+      cookie.setHttpOnly(true);
+      response.addCookie(cookie);
+    }
+    return session;
   }
 
   @Override
   public HttpSession getSession() {
-    return null;
+    return getSession(true);
   }
 
   @Override
   public boolean isRequestedSessionIdValid() {
-    return false;
+    if (requestedSessionId == null) {
+      return false;
+    }
+    HttpSession current = getSession(false);
+    return current != null && requestedSessionId.equals(current.getId());
   }
 
   @Override
   public boolean isRequestedSessionIdFromCookie() {
-    return false;
+    return requestedSessionCookie;
   }
 
   @Override
@@ -419,11 +732,18 @@ public class HttpRequest implements HttpServletRequest {
 
   @Override
   public Collection<Part> getParts() throws IOException, ServletException {
-    return null;
+    parseParts();
+    return Collections.unmodifiableList(parts);
   }
 
   @Override
-  public Part getPart(String s) throws IOException, ServletException {
+  public Part getPart(String name) throws IOException, ServletException {
+    parseParts();
+    for (StandardPart part : parts) {
+      if (part.getName().equals(name)) {
+        return part;
+      }
+    }
     return null;
   }
 
@@ -439,15 +759,22 @@ public class HttpRequest implements HttpServletRequest {
 
   @Override
   public String getCharacterEncoding() {
-    return null;
+    return characterEncoding;
   }
 
   @Override
-  public void setCharacterEncoding(String s) throws UnsupportedEncodingException {}
+  public void setCharacterEncoding(String s) throws UnsupportedEncodingException {
+    this.characterEncoding = s;
+  }
+
+  /** Servlet 3.0的getContentLength只能返回int，超过int范围时返回-1，请求体长度以这个值为准 */
+  public long getContentLengthLong() {
+    return contentLength;
+  }
 
   @Override
   public int getContentLength() {
-    return contentLength;
+    return contentLength > Integer.MAX_VALUE ? -1 : (int) contentLength;
   }
 
   @Override
@@ -458,10 +785,10 @@ public class HttpRequest implements HttpServletRequest {
   @Override
   public ServletInputStream getInputStream() throws IOException {
     if (reader != null) {
-      throw new IllegalStateException("getInputStream has been called");
+      throw new IllegalStateException("getReader has been called");
     }
     if (stream == null) {
-      stream = createInputStream();
+      stream = getBody();
     }
     return (stream);
   }
@@ -469,31 +796,30 @@ public class HttpRequest implements HttpServletRequest {
   @Override
   public String getParameter(String name) {
     parseParameters();
-    String[] values = parameters.get(name);
-    return Optional.ofNullable(values).map(arr -> arr[0]).orElse(null);
+    return parameters.getParameter(name);
   }
 
   @Override
   public Enumeration<String> getParameterNames() {
     parseParameters();
-    return (new Enumerator<>(parameters.keySet()));
+    return (new Enumerator<>(parameters.getNames()));
   }
 
   @Override
   public String[] getParameterValues(String name) {
     parseParameters();
-    return parameters.get(name);
+    return parameters.getParameterValues(name);
   }
 
   @Override
   public Map<String, String[]> getParameterMap() {
     parseParameters();
-    return this.parameters;
+    return parameters.getMap();
   }
 
   @Override
   public String getProtocol() {
-    return null;
+    return protocol;
   }
 
   @Override
@@ -513,7 +839,17 @@ public class HttpRequest implements HttpServletRequest {
 
   @Override
   public BufferedReader getReader() throws IOException {
-    return null;
+    if (stream != null) {
+      throw new IllegalStateException("getInputStream has been called");
+    }
+    if (reader == null) {
+      String encoding = getCharacterEncoding();
+      if (encoding == null) {
+        encoding = StringUtil.ISO_8859_1;
+      }
+      reader = new BufferedReader(new InputStreamReader(getBody(), encoding));
+    }
+    return reader;
   }
 
   @Override
@@ -1,95 +1,548 @@
 package server.http.carrier;
 
-import server.connector.HttpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import server.constant.HttpVersionConstant;
+import server.enums.HTTPHeaderEnum;
+import server.enums.HTTPMethodEnum;
 import server.enums.HttpStatusEnum;
-import server.util.ArrayUtil;
+import server.http.carrier.facade.HttpResponseFacade;
+import server.http.carrier.facade.ServletOutputStreamFacade;
+import server.http.carrier.facade.WriterFacade;
+import server.http.stream.ChannelOutputStream;
+import server.http.stream.ChunkedOutputStream;
+import server.http.stream.ResponseStream;
+import server.util.DateUtil;
+import server.util.RequestUtil;
+import server.util.StringUtil;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
-import java.io.*;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Set;
 
 /**
+ * HTTP响应。状态和响应头在提交之前都只记录在内存中，提交时一次编码成字节， 和第一段响应体一起聚合写出，连接是通道输出流时只需要一次系统调用
+ *
  * @author zhout
  * @date 2020/6/9 15:02
  */
 public class HttpResponse implements HttpServletResponse {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpResponse.class);
+
+  /** 普通复制文件时每次读取的字节数 */
+  private static final int FILE_BUFFER_SIZE = 8192;
+
+  /** 编码响应头的初始缓冲区大小 */
+  private static final int INITIAL_HEAD_SIZE = 256;
+
+  /** 预先生成的状态行，下标是状态码 */
+  private static final byte[][] STATUS_LINES = new byte[600][];
+
+  private static final byte[] CRLF = {'\r', '\n'};
+
+  private static final byte[] KEEP_ALIVE_TAIL =
+      "Connection: keep-alive\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+  private static final byte[] CLOSE_TAIL =
+      "Connection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+  static {
+    for (HttpStatusEnum status : HttpStatusEnum.values()) {
+      String line =
+          HttpVersionConstant.HTTP_1_1 + " " + status.getStatus() + " " + status.getDesc() + "\r\n";
+      STATUS_LINES[status.getStatus()] = line.getBytes(StandardCharsets.ISO_8859_1);
+    }
+  }
+
   private OutputStream outputStream;
-  private HttpRequest request;
+  private final HttpRequest request;
+
+  /** 本次响应交给servlet的writer */
   private PrintWriter writer;
 
-  public HttpResponse(OutputStream outputStream, HttpRequest request) {
-    this.outputStream = outputStream;
+  /** writer实际写入的外观对象，回收时失效 */
+  private WriterFacade writerFacade;
+
+  /** 写入stream的字符编码器，正常结束的响应留下的编码器在编码相同时直接复用 */
+  private OutputStreamWriter encoder;
+
+  private String encoderEncoding;
+
+  /** 交给servlet的输出流，第一次使用时创建 */
+  private ServletOutputStreamFacade streamFacade;
+
+  /** 复用的chunked编码流 */
+  private ChunkedOutputStream chunkedOutput;
+
+  /** 交给Servlet的外观对象，第一次使用时创建 */
+  private HttpResponseFacade facade;
+
+  /** 回收时是否丢弃外观对象 */
+  private final boolean discardFacade;
+
+  /** 响应是否已经正常结束 */
+  private boolean finished;
+
+  /** servlet使用的带缓冲输出流 */
+  private final ResponseStream stream;
+
+  /** servlet是否已经调用过getOutputStream */
+  private boolean usingStream;
+
+  /** 响应状态码 */
+  private int status = HttpStatusEnum.OK.getStatus();
+
+  /** 自定义的状态描述，为null时使用标准描述 */
+  private String message;
+
+  /** 响应体字符编码 */
+  private String characterEncoding = StringUtil.ISO_8859_1;
+
+  /** 响应体长度，-1表示未知 */
+  private long contentLength = -1;
+
+  /** 响应结束后是否保持连接 */
+  private boolean keepAlive;
+
+  /** 响应体类型，null表示不输出 */
+  private String contentType;
+
+  /** 其他响应头 */
+  private final ResponseHeaders headers = new ResponseHeaders();
+
+  /** 响应头是否已经输出 */
+  private boolean committed;
+
+  /** 响应体长度未知时的chunked编码流，不使用chunked时为null */
+  private ChunkedOutputStream chunkedStream;
+
+  /** 编码响应头用的缓冲区 */
+  private byte[] head;
+
+  private int headLength;
+
+  /**
+   * 构造方法。实例和对应的请求一起属于HttpProcess，每个响应结束后调用{@link #recycle()}复用
+   *
+   * @param request 对应的请求
+   * @param buffer 响应缓冲区数组，在多个响应之间复用
+   * @param discardFacade 回收时是否丢弃外观对象
+   */
+  public HttpResponse(HttpRequest request, byte[] buffer, boolean discardFacade) {
     this.request = request;
+    this.stream = new ResponseStream(this, buffer);
+    this.discardFacade = discardFacade;
+  }
+
+  /**
+   * 设置连接输出流，每个请求开始时调用
+   *
+   * @param outputStream 连接输出流
+   */
+  public void setOutputStream(OutputStream outputStream) {
+    this.outputStream = outputStream;
+  }
+
+  /** 交给Servlet的外观对象 */
+  public HttpResponseFacade getFacade() {
+    if (facade == null) {
+      facade = new HttpResponseFacade(this);
+    }
+    return facade;
+  }
+
+  /**
+   * 清空本次响应的全部状态，准备输出下一个响应。servlet拿到的writer每次都失效，正常结束的响应留下的编码器已经刷空，
+   * 留给下一个响应复用；丢弃外观对象时输出流的外观对象也一起失效
+   */
+  public void recycle() {
+    if (discardFacade) {
+      if (facade != null) {
+        facade.clear();
+        facade = null;
+      }
+      if (streamFacade != null) {
+        streamFacade.clear();
+        streamFacade = null;
+      }
+    }
+    if (writer != null) {
+      // 正常结束的writer已经刷出，checkError不会再写出数据
+      if (!finished || writer.checkError()) {
+        encoder = null;
+        encoderEncoding = null;
+      }
+      writerFacade.clear();
+      writerFacade = null;
+      writer = null;
+    }
+    outputStream = null;
+    stream.recycle();
+    usingStream = false;
+    status = HttpStatusEnum.OK.getStatus();
+    message = null;
+    characterEncoding = StringUtil.ISO_8859_1;
+    contentLength = -1;
+    keepAlive = false;
+    contentType = null;
+    headers.clear();
+    committed = false;
+    chunkedStream = null;
+    finished = false;
   }
 
-  public void accessStaticResources() throws IOException {
-    // 根据请求URI找到用户对应请求的资源文件
-    File staticResource = new File(HttpConnector.WEB_PROJECT_ROOT + request.getRequestURI());
-    // 资源存在
-    if (staticResource.exists() && staticResource.isFile()) {
-      outputStream.write(responseToByte(HttpStatusEnum.OK));
-      // 资源不存在
+  /**
+   * 按当前状态提交响应，只输出状态行和响应头
+   *
+   * @throws IOException 写出错
+   */
+  public void commit() throws IOException {
+    commit(null, 0, 0);
+  }
+
+  /**
+   * 按当前状态提交响应，状态行、响应头和第一段响应体一次聚合写出。响应体长度未知时， HTTP/1.1请求使用chunked编码以便保持连接，HTTP/1.0请求只能在响应结束后关闭连接
+   *
+   * @param b 第一段响应体
+   * @param off 起始位置
+   * @param len 长度
+   * @throws IOException 写出错
+   */
+  public void commit(byte[] b, int off, int len) throws IOException {
+    if (!hasBody()) {
+      // 204和304不能带响应体，也不输出Content-Length
+      contentLength = -1;
+      len = 0;
+    } else if (isHeadRequest()) {
+      // HEAD响应保留Content-Length，但不输出响应体；长度未知时也不使用chunked，响应本身就没有响应体
+      len = 0;
+    } else if (contentLength < 0) {
+      if (HttpVersionConstant.HTTP_1_1.equals(request.getProtocol())) {
+        if (chunkedOutput == null) {
+          chunkedOutput = new ChunkedOutputStream(outputStream);
+        } else {
+          chunkedOutput.reset(outputStream);
+        }
+        chunkedStream = chunkedOutput;
+      } else {
+        keepAlive = false;
+      }
+    }
+    committed = true;
+    ByteBuffer head = encodeHead();
+    if (chunkedStream != null) {
+      chunkedStream.write(head, b, off, len);
+    } else if (len > 0) {
+      writeBuffers(head, ByteBuffer.wrap(b, off, len));
     } else {
-      staticResource = new File(HttpConnector.WEB_PROJECT_ROOT + "/404.html");
-      outputStream.write(responseToByte(HttpStatusEnum.NOT_FOUND));
+      writeBuffers(head);
+    }
+  }
+
+  /**
+   * 响应体的输出流，chunked编码时是编码流，不能带响应体的状态和HEAD请求丢弃所有输出。只能在提交响应之后使用
+   *
+   * @return 响应体输出流
+   */
+  public OutputStream getBodyStream() {
+    if (chunkedStream != null) {
+      return chunkedStream;
     }
-    writeFile(staticResource);
+    return writesBody() ? outputStream : OutputStream.nullOutputStream();
+  }
+
+  /**
+   * 按指定状态输出状态行和响应头，需要先设置好响应体长度和是否保持连接
+   *
+   * @param status 响应http状态
+   * @throws IOException 写出错
+   */
+  public void sendHeaders(HttpStatusEnum status) throws IOException {
+    this.status = status.getStatus();
+    this.message = null;
+    commit();
   }
 
   /**
-   * 将请求行 请求头转换为byte数组
+   * 输出预先生成的响应头和响应体。状态行和Connection头按本次请求生成，和预先生成的部分一起聚合写出；HEAD请求不输出响应体
    *
    * @param status 响应http状态
-   * @return 响应头byte数组
+   * @param headers 除状态行和Connection之外的响应头，每行以CRLF结尾
+   * @param body 响应体
+   * @throws IOException 写出错
    */
-  public byte[] responseToByte(HttpStatusEnum status) {
-    return new StringBuilder()
-        .append(HttpVersionConstant.HTTP_1_1)
-        .append(" ")
-        .append(status.getStatus())
-        .append(" ")
-        .append(status.getDesc())
-        .append("\r\n\r\n")
-        .toString()
-        .getBytes();
+  public void sendPrepared(HttpStatusEnum status, ByteBuffer headers, ByteBuffer body)
+      throws IOException {
+    this.status = status.getStatus();
+    committed = true;
+    ByteBuffer statusLine = ByteBuffer.wrap(STATUS_LINES[status.getStatus()]);
+    ByteBuffer tail = ByteBuffer.wrap(keepAlive ? KEEP_ALIVE_TAIL : CLOSE_TAIL);
+    if (writesBody()) {
+      writeBuffers(statusLine, headers, tail, body);
+    } else {
+      writeBuffers(statusLine, headers, tail);
+    }
   }
 
   /**
-   * 将读取到的资源文件输出
+   * 输出响应体，HEAD请求和不能带响应体的状态直接丢弃
    *
-   * @param file 读取到的文件
+   * @param buffers 响应体数据
+   * @throws IOException 写出错
+   */
+  public void write(ByteBuffer... buffers) throws IOException {
+    if (writesBody()) {
+      writeBuffers(buffers);
+    }
+  }
+
+  /**
+   * 依次写出多个缓冲区，通道输出流上只需要一次聚合写
+   *
+   * @param buffers 待写出数据
+   * @throws IOException 写出错
+   */
+  private void writeBuffers(ByteBuffer... buffers) throws IOException {
+    if (outputStream instanceof ChannelOutputStream) {
+      ((ChannelOutputStream) outputStream).write(buffers);
+      return;
+    }
+    byte[] cache = null;
+    for (ByteBuffer buffer : buffers) {
+      if (buffer.hasArray()) {
+        outputStream.write(
+            buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+        continue;
+      }
+      // 直接内存和只读缓冲区需要先复制到堆中
+      if (cache == null) {
+        cache = new byte[FILE_BUFFER_SIZE];
+      }
+      while (buffer.hasRemaining()) {
+        int length = Math.min(buffer.remaining(), cache.length);
+        buffer.get(cache, 0, length);
+        outputStream.write(cache, 0, length);
+      }
+    }
+  }
+
+  /**
+   * 把状态行和响应头编码到可复用的字节数组。响应体长度已知时输出Content-Length，否则按需输出Transfer-Encoding，
+   * 最后用Connection告知客户端是否保持连接
+   *
+   * @return 编码后的响应头
+   */
+  private ByteBuffer encodeHead() {
+    if (head == null) {
+      head = new byte[INITIAL_HEAD_SIZE];
+    }
+    headLength = 0;
+    byte[] statusLine = message == null && status < STATUS_LINES.length ? STATUS_LINES[status] : null;
+    if (statusLine != null) {
+      putBytes(statusLine);
+    } else {
+      HttpStatusEnum known = HttpStatusEnum.valueOf(status);
+      putAscii(HttpVersionConstant.HTTP_1_1);
+      putAscii(" ");
+      putAscii(Integer.toString(status));
+      putAscii(" ");
+      putAscii(message != null ? message : known != null ? known.getDesc() : "");
+      putBytes(CRLF);
+    }
+    if (contentType != null) {
+      putHeader("Content-Type", contentType);
+    }
+    if (contentLength >= 0) {
+      putHeader("Content-Length", Long.toString(contentLength));
+    } else if (chunkedStream != null) {
+      putHeader("Transfer-Encoding", "chunked");
+    }
+    for (int i = 0; i < headers.size(); i++) {
+      putHeader(headers.getName(i), headers.getValue(i));
+    }
+    putBytes(keepAlive ? KEEP_ALIVE_TAIL : CLOSE_TAIL);
+    return ByteBuffer.wrap(head, 0, headLength);
+  }
+
+  private void putHeader(String name, String value) {
+    putAscii(name);
+    putAscii(": ");
+    putAscii(value);
+    putBytes(CRLF);
+  }
+
+  private void putBytes(byte[] bytes) {
+    ensureHeadCapacity(bytes.length);
+    System.arraycopy(bytes, 0, head, headLength, bytes.length);
+    headLength += bytes.length;
+  }
+
+  /** 按ISO-8859-1编码，值中的CR、LF替换成空格，防止响应头被拆分 */
+  private void putAscii(String value) {
+    int length = value.length();
+    ensureHeadCapacity(length);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '\r' || c == '\n') {
+        c = ' ';
+      } else if (c > 0xFF) {
+        c = '?';
+      }
+      head[headLength++] = (byte) c;
+    }
+  }
+
+  private void ensureHeadCapacity(int length) {
+    if (headLength + length > head.length) {
+      head = Arrays.copyOf(head, Math.max(head.length << 1, headLength + length));
+    }
+  }
+
+  /** 1xx、204和304响应不能带响应体 */
+  private boolean hasBody() {
+    return status >= 200
+        && status != HttpStatusEnum.NO_CONTENT.getStatus()
+        && status != HttpStatusEnum.NOT_MODIFIED.getStatus();
+  }
+
+  /** 是否真正输出响应体：HEAD请求的响应头和GET相同，但没有响应体 */
+  private boolean writesBody() {
+    return hasBody() && !isHeadRequest();
+  }
+
+  private boolean isHeadRequest() {
+    return HTTPMethodEnum.HEAD.name().equals(request.getMethod());
+  }
+
+  /**
+   * 把文件区间零拷贝地发送到连接，输出流不是通道输出流时退化为普通复制
+   *
+   * @param file 文件通道
+   * @param position 起始位置
+   * @param count 发送的字节数
+   * @throws IOException IOException
+   */
+  public void transferFile(FileChannel file, long position, long count) throws IOException {
+    if (!writesBody()) {
+      return;
+    }
+    if (outputStream instanceof ChannelOutputStream) {
+      ((ChannelOutputStream) outputStream).transferFrom(file, position, count);
+    } else {
+      writeFile(file, position, count);
+    }
+  }
+
+  /**
+   * 把文件区间读到堆内存中再输出
+   *
+   * @param file 文件通道
+   * @param position 起始位置
+   * @param count 发送的字节数
    * @throws IOException IOException
    */
-  private void writeFile(File file) throws IOException {
-    try (FileInputStream fis = new FileInputStream(file)) {
-      byte[] cache = ArrayUtil.generatorCache();
-      int read;
-      while ((read = fis.read(cache, 0, ArrayUtil.BUFFER_SIZE)) != -1) {
-        outputStream.write(cache, 0, read);
+  public void writeFile(FileChannel file, long position, long count) throws IOException {
+    if (!writesBody()) {
+      return;
+    }
+    ByteBuffer cache = ByteBuffer.allocate((int) Math.min(count, FILE_BUFFER_SIZE));
+    while (count > 0) {
+      cache.clear().limit((int) Math.min(count, cache.capacity()));
+      int read = file.read(cache, position);
+      if (read < 0) {
+        throw new EOFException("File is truncated while writing.");
       }
+      outputStream.write(cache.array(), 0, read);
+      position += read;
+      count -= read;
     }
   }
 
-  public void finishResponse() {
-    // sendHeaders();
-    // Flush and close the appropriate output mechanism
+  /**
+   * 结束servlet响应。响应还没有提交时，缓冲区中就是完整的响应体，按Content-Length输出；
+   * 否则写出剩余内容，chunked编码时输出最后一个chunk。不关闭输出流，连接的关闭由连接器决定
+   *
+   * @throws IOException 写出错
+   */
+  public void finishResponse() throws IOException {
+    stream.setFinishing();
     if (writer != null) {
       writer.flush();
-      writer.close();
     }
+    if (!committed && contentLength < 0) {
+      contentLength = stream.getBufferedCount();
+    }
+    stream.flushBuffer();
+    if (chunkedStream != null) {
+      chunkedStream.finish();
+    }
+    finished = true;
   }
 
+  public boolean isKeepAlive() {
+    return keepAlive;
+  }
+
+  /**
+   * 设置响应结束后是否保持连接，需要在输出响应头之前设置
+   *
+   * @param keepAlive 是否保持连接
+   */
+  public void setKeepAlive(boolean keepAlive) {
+    this.keepAlive = keepAlive;
+  }
+
+  /**
+   * 按Set-Cookie的格式输出Cookie，需要在提交响应之前调用
+   *
+   * @param cookie Cookie
+   */
   @Override
-  public void addCookie(Cookie cookie) {}
+  public void addCookie(Cookie cookie) {
+    if (committed) {
+      return;
+    }
+    StringBuilder builder = new StringBuilder(64);
+    builder.append(cookie.getName()).append('=');
+    if (cookie.getValue() != null) {
+      builder.append(cookie.getValue());
+    }
+    if (cookie.getMaxAge() >= 0) {
+      builder.append("; Max-Age=").append(cookie.getMaxAge());
+    }
+    if (cookie.getDomain() != null) {
+      builder.append("; Domain=").append(cookie.getDomain());
+    }
+    if (cookie.getPath() != null) {
+      builder.append("; Path=").append(cookie.getPath());
+    }
+    if (cookie.getSecure()) {
+      builder.append("; Secure");
+    }
+    if (cookie.isHttpOnly()) {
+      builder.append("; HttpOnly");
+    }
+    headers.add("Set-Cookie", builder.toString());
+  }
 
   @Override
-  public boolean containsHeader(String s) {
-    return false;
+  public boolean containsHeader(String name) {
+    return getHeader(name) != null;
   }
 
   @Override
@@ -113,111 +566,260 @@ public class HttpResponse implements HttpServletResponse {
   }
 
   @Override
-  public void sendError(int i, String s) throws IOException {}
+  public void sendError(int sc, String msg) throws IOException {
+    if (committed) {
+      throw new IllegalStateException("Response has been committed");
+    }
+    resetBuffer();
+    setStatus(sc, msg);
+    contentLength = 0;
+    stream.close();
+  }
 
   @Override
-  public void sendError(int i) throws IOException {}
+  public void sendError(int sc) throws IOException {
+    sendError(sc, null);
+  }
 
   @Override
-  public void sendRedirect(String s) throws IOException {}
+  public void sendRedirect(String location) throws IOException {
+    if (committed) {
+      throw new IllegalStateException("Response has been committed");
+    }
+    resetBuffer();
+    setStatus(HttpStatusEnum.FOUND.getStatus());
+    setHeader("Location", location);
+    contentLength = 0;
+    stream.close();
+  }
 
   @Override
-  public void setDateHeader(String s, long l) {}
+  public void setDateHeader(String name, long date) {
+    setHeader(name, DateUtil.formatHttpDate(date));
+  }
 
   @Override
-  public void addDateHeader(String s, long l) {}
+  public void addDateHeader(String name, long date) {
+    addHeader(name, DateUtil.formatHttpDate(date));
+  }
 
   @Override
-  public void setHeader(String s, String s1) {}
+  public void setHeader(String name, String value) {
+    if (committed || name == null || setSpecialHeader(name, value)) {
+      return;
+    }
+    if (value == null) {
+      headers.remove(name);
+    } else {
+      headers.set(name, value);
+    }
+  }
 
   @Override
-  public void addHeader(String s, String s1) {}
+  public void addHeader(String name, String value) {
+    if (committed || name == null || value == null || setSpecialHeader(name, value)) {
+      return;
+    }
+    headers.add(name, value);
+  }
+
+  /**
+   * Content-Type和Content-Length单独记录，Connection和Transfer-Encoding由服务器根据连接状态输出，servlet设置的值忽略
+   *
+   * @param name 响应头名字
+   * @param value 值
+   * @return 是否已经处理
+   */
+  private boolean setSpecialHeader(String name, String value) {
+    if (HTTPHeaderEnum.CONTENT_TYPE.getDesc().equalsIgnoreCase(name)) {
+      setContentType(value);
+      return true;
+    }
+    if (HTTPHeaderEnum.CONTENT_LENGTH.getDesc().equalsIgnoreCase(name)) {
+      try {
+        setContentLengthLong(value == null ? -1 : Long.parseLong(value.trim()));
+      } catch (NumberFormatException e) {
+        LOGGER.warn("Invalid Content-Length header value: {}", value);
+      }
+      return true;
+    }
+    return HTTPHeaderEnum.CONNECTION.getDesc().equalsIgnoreCase(name)
+        || HTTPHeaderEnum.TRANSFER_ENCODING.getDesc().equalsIgnoreCase(name);
+  }
 
   @Override
-  public void setIntHeader(String s, int i) {}
+  public void setIntHeader(String name, int value) {
+    setHeader(name, Integer.toString(value));
+  }
 
   @Override
-  public void addIntHeader(String s, int i) {}
+  public void addIntHeader(String name, int value) {
+    addHeader(name, Integer.toString(value));
+  }
 
   @Override
-  public void setStatus(int i) {}
+  public void setStatus(int sc) {
+    setStatus(sc, null);
+  }
 
   @Override
-  public void setStatus(int i, String s) {}
+  public void setStatus(int sc, String msg) {
+    if (committed || sc < 100 || sc > 999) {
+      return;
+    }
+    this.status = sc;
+    this.message = msg;
+  }
 
   @Override
   public int getStatus() {
-    return 0;
+    return status;
   }
 
   @Override
-  public String getHeader(String s) {
-    return null;
+  public String getHeader(String name) {
+    if (HTTPHeaderEnum.CONTENT_TYPE.getDesc().equalsIgnoreCase(name)) {
+      return contentType;
+    }
+    if (HTTPHeaderEnum.CONTENT_LENGTH.getDesc().equalsIgnoreCase(name)) {
+      return contentLength >= 0 ? Long.toString(contentLength) : null;
+    }
+    return headers.get(name);
   }
 
   @Override
-  public Collection<String> getHeaders(String s) {
-    return null;
+  public Collection<String> getHeaders(String name) {
+    String special = getHeader(name);
+    if (special != null && headers.get(name) == null) {
+      return Collections.singletonList(special);
+    }
+    return headers.getAll(name);
   }
 
   @Override
   public Collection<String> getHeaderNames() {
-    return null;
+    Set<String> names = headers.getNames();
+    if (contentType != null) {
+      names.add("Content-Type");
+    }
+    if (contentLength >= 0) {
+      names.add("Content-Length");
+    }
+    return names;
   }
 
   @Override
   public String getCharacterEncoding() {
-    return null;
+    return characterEncoding;
   }
 
   @Override
   public String getContentType() {
-    return null;
+    return contentType;
   }
 
   @Override
   public ServletOutputStream getOutputStream() throws IOException {
-    return null;
+    if (writer != null) {
+      throw new IllegalStateException("getWriter has been called");
+    }
+    usingStream = true;
+    if (streamFacade == null) {
+      streamFacade = new ServletOutputStreamFacade(stream);
+    }
+    return streamFacade;
   }
 
   @Override
   public PrintWriter getWriter() throws IOException {
-    if (writer != null) {
-      return writer;
+    if (usingStream) {
+      throw new IllegalStateException("getOutputStream has been called");
+    }
+    if (writer == null) {
+      if (encoder == null || !characterEncoding.equals(encoderEncoding)) {
+        encoder = new OutputStreamWriter(stream, characterEncoding);
+        encoderEncoding = characterEncoding;
+      }
+      writerFacade = new WriterFacade(encoder, stream);
+      writer = new PrintWriter(writerFacade);
     }
-    return (writer = new PrintWriter(outputStream));
+    return writer;
   }
 
   @Override
-  public void setCharacterEncoding(String s) {}
+  public void setCharacterEncoding(String charset) {
+    // writer创建之后编码已经确定
+    if (!committed && writer == null && charset != null) {
+      this.characterEncoding = charset;
+    }
+  }
 
   @Override
-  public void setContentLength(int i) {}
+  public void setContentLength(int i) {
+    setContentLengthLong(i);
+  }
+
+  /**
+   * 设置响应体长度，需要在输出响应头之前设置
+   *
+   * @param length 响应体长度，-1表示未知
+   */
+  public void setContentLengthLong(long length) {
+    this.contentLength = length;
+  }
 
   @Override
-  public void setContentType(String s) {}
+  public void setContentType(String type) {
+    if (!committed) {
+      this.contentType = type;
+      setCharacterEncoding(RequestUtil.parseCharacterEncoding(type));
+    }
+  }
 
   @Override
-  public void setBufferSize(int i) {}
+  public void setBufferSize(int size) {
+    if (committed) {
+      throw new IllegalStateException("Response has been committed");
+    }
+    stream.setBufferSize(size);
+  }
 
   @Override
   public int getBufferSize() {
-    return 0;
+    return stream.getBufferSize();
   }
 
   @Override
-  public void flushBuffer() throws IOException {}
+  public void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    } else {
+      stream.flush();
+    }
+  }
 
   @Override
-  public void resetBuffer() {}
+  public void resetBuffer() {
+    if (committed) {
+      throw new IllegalStateException("Response has been committed");
+    }
+    stream.resetBuffer();
+  }
 
   @Override
   public boolean isCommitted() {
-    return false;
+    return committed;
   }
 
   @Override
-  public void reset() {}
+  public void reset() {
+    resetBuffer();
+    status = HttpStatusEnum.OK.getStatus();
+    message = null;
+    contentType = null;
+    contentLength = -1;
+    headers.clear();
+  }
 
   @Override
   public void setLocale(Locale locale) {}
@@ -0,0 +1,133 @@
+package server.http.carrier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 响应头。名字和值交替存放在同一个数组中，按添加顺序输出，名字比较忽略大小写。 Content-Type、Content-Length和Connection由{@link HttpResponse}单独维护，不放在这里
+ *
+ * @author zhout
+ * @date 2020/7/5 10:20
+ */
+public class ResponseHeaders {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  /** 下标2n是第n个响应头的名字，2n+1是值 */
+  private String[] entries = new String[INITIAL_CAPACITY << 1];
+
+  private int count;
+
+  public int size() {
+    return count;
+  }
+
+  public String getName(int index) {
+    return entries[index << 1];
+  }
+
+  public String getValue(int index) {
+    return entries[(index << 1) + 1];
+  }
+
+  /**
+   * 添加响应头，已有同名的响应头时保留
+   *
+   * @param name 名字
+   * @param value 值
+   */
+  public void add(String name, String value) {
+    if ((count << 1) == entries.length) {
+      entries = Arrays.copyOf(entries, entries.length << 1);
+    }
+    entries[count << 1] = name;
+    entries[(count << 1) + 1] = value;
+    count++;
+  }
+
+  /**
+   * 设置响应头，替换所有同名的响应头
+   *
+   * @param name 名字
+   * @param value 值
+   */
+  public void set(String name, String value) {
+    remove(name);
+    add(name, value);
+  }
+
+  /**
+   * 删除所有同名的响应头
+   *
+   * @param name 名字
+   */
+  public void remove(String name) {
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      if (!getName(i).equalsIgnoreCase(name)) {
+        entries[kept << 1] = getName(i);
+        entries[(kept << 1) + 1] = getValue(i);
+        kept++;
+      }
+    }
+    Arrays.fill(entries, kept << 1, count << 1, null);
+    count = kept;
+  }
+
+  /**
+   * 获取第一个同名响应头的值
+   *
+   * @param name 名字
+   * @return 值，不存在时返回null
+   */
+  public String get(String name) {
+    for (int i = 0; i < count; i++) {
+      if (getName(i).equalsIgnoreCase(name)) {
+        return getValue(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 获取所有同名响应头的值
+   *
+   * @param name 名字
+   * @return 值列表
+   */
+  public Collection<String> getAll(String name) {
+    List<String> values = null;
+    for (int i = 0; i < count; i++) {
+      if (getName(i).equalsIgnoreCase(name)) {
+        if (values == null) {
+          values = new ArrayList<>(2);
+        }
+        values.add(getValue(i));
+      }
+    }
+    return values == null ? Collections.emptyList() : values;
+  }
+
+  /** 所有响应头的名字，同名的只保留第一次出现的写法 */
+  public Set<String> getNames() {
+    Set<String> names = new LinkedHashSet<>();
+    Set<String> seen = new HashSet<>();
+    for (int i = 0; i < count; i++) {
+      if (seen.add(getName(i).toLowerCase())) {
+        names.add(getName(i));
+      }
+    }
+    return names;
+  }
+
+  public void clear() {
+    Arrays.fill(entries, 0, count << 1, null);
+    count = 0;
+  }
+}
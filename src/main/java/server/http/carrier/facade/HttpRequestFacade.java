@@ -26,334 +26,347 @@ public class HttpRequestFacade implements HttpServletRequest {
     this.request = request;
   }
 
+  /** 对应的请求已经回收，之后通过这个外观对象的访问都会抛出{@link IllegalStateException} */
+  public void clear() {
+    request = null;
+  }
+
+  private HttpRequest request() {
+    HttpRequest current = request;
+    if (current == null) {
+      throw new IllegalStateException("Request object has been recycled");
+    }
+    return current;
+  }
+
 
   @Override
   public Object getAttribute(String name) {
-    return request.getAttribute(name);
+    return request().getAttribute(name);
   }
 
   @Override
   public Enumeration<String> getAttributeNames() {
-    return request.getAttributeNames();
+    return request().getAttributeNames();
   }
 
   @Override
   public String getCharacterEncoding() {
-    return request.getCharacterEncoding();
+    return request().getCharacterEncoding();
   }
 
   @Override
   public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
-    request.setCharacterEncoding(env);
+    request().setCharacterEncoding(env);
   }
 
   @Override
   public int getContentLength() {
-    return request.getContentLength();
+    return request().getContentLength();
   }
 
   @Override
   public String getContentType() {
-    return request.getContentType();
+    return request().getContentType();
   }
 
   @Override
   public ServletInputStream getInputStream() throws IOException {
-    return request.getInputStream();
+    return request().getInputStream();
   }
 
   @Override
   public String getParameter(String name) {
-    return request.getParameter(name);
+    return request().getParameter(name);
   }
 
   @Override
   public Enumeration<String> getParameterNames() {
-    return request.getParameterNames();
+    return request().getParameterNames();
   }
 
   @Override
   public String[] getParameterValues(String name) {
-    return request.getParameterValues(name);
+    return request().getParameterValues(name);
   }
 
   @Override
   public Map<String, String[]> getParameterMap() {
-    return request.getParameterMap();
+    return request().getParameterMap();
   }
 
   @Override
   public String getProtocol() {
-    return request.getProtocol();
+    return request().getProtocol();
   }
 
   @Override
   public String getScheme() {
-    return request.getScheme();
+    return request().getScheme();
   }
 
   @Override
   public String getServerName() {
-    return request.getServerName();
+    return request().getServerName();
   }
 
   @Override
   public int getServerPort() {
-    return request.getServerPort();
+    return request().getServerPort();
   }
 
   @Override
   public BufferedReader getReader() throws IOException {
-    return request.getReader();
+    return request().getReader();
   }
 
   @Override
   public String getRemoteAddr() {
-    return request.getRemoteAddr();
+    return request().getRemoteAddr();
   }
 
   @Override
   public String getRemoteHost() {
-    return request.getRemoteHost();
+    return request().getRemoteHost();
   }
 
   @Override
   public void setAttribute(String name, Object o) {
-    request.setAttribute(name,o);
+    request().setAttribute(name,o);
   }
 
   @Override
   public void removeAttribute(String name) {
-    request.removeAttribute(name);
+    request().removeAttribute(name);
   }
 
   @Override
   public Locale getLocale() {
-    return request.getLocale();
+    return request().getLocale();
   }
 
   @Override
   public Enumeration<Locale> getLocales() {
-    return request.getLocales();
+    return request().getLocales();
   }
 
   @Override
   public boolean isSecure() {
-    return request.isSecure();
+    return request().isSecure();
   }
 
   @Override
   public RequestDispatcher getRequestDispatcher(String path) {
-    return request.getRequestDispatcher(path);
+    return request().getRequestDispatcher(path);
   }
 
   @Override
   public String getRealPath(String path) {
-    return request.getRealPath(path);
+    return request().getRealPath(path);
   }
 
   @Override
   public int getRemotePort() {
-    return request.getRemotePort();
+    return request().getRemotePort();
   }
 
   @Override
   public String getLocalName() {
-    return request.getLocalName();
+    return request().getLocalName();
   }
 
   @Override
   public String getLocalAddr() {
-    return request.getLocalAddr();
+    return request().getLocalAddr();
   }
 
   @Override
   public int getLocalPort() {
-    return request.getLocalPort();
+    return request().getLocalPort();
   }
 
   @Override
   public ServletContext getServletContext() {
-    return request.getServletContext();
+    return request().getServletContext();
   }
 
   @Override
   public AsyncContext startAsync() throws IllegalStateException {
-    return request.startAsync();
+    return request().startAsync();
   }
 
   @Override
   public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) throws IllegalStateException {
-    return request.startAsync(servletRequest,servletResponse);
+    return request().startAsync(servletRequest,servletResponse);
   }
 
   @Override
   public boolean isAsyncStarted() {
-    return request.isAsyncStarted();
+    return request().isAsyncStarted();
   }
 
   @Override
   public boolean isAsyncSupported() {
-    return request.isAsyncSupported();
+    return request().isAsyncSupported();
   }
 
   @Override
   public AsyncContext getAsyncContext() {
-    return request.getAsyncContext();
+    return request().getAsyncContext();
   }
 
   @Override
   public DispatcherType getDispatcherType() {
-    return request.getDispatcherType();
+    return request().getDispatcherType();
   }
 
   @Override
   public String getAuthType() {
-    return request.getAuthType();
+    return request().getAuthType();
   }
 
   @Override
   public Cookie[] getCookies() {
-    return request.getCookies();
+    return request().getCookies();
   }
 
   @Override
   public long getDateHeader(String name) {
-    return request.getDateHeader(name);
+    return request().getDateHeader(name);
   }
 
   @Override
   public String getHeader(String name) {
-    return request.getHeader(name);
+    return request().getHeader(name);
   }
 
   @Override
   public Enumeration<String> getHeaders(String name) {
-    return request.getHeaders(name);
+    return request().getHeaders(name);
   }
 
   @Override
   public Enumeration<String> getHeaderNames() {
-    return request.getHeaderNames();
+    return request().getHeaderNames();
   }
 
   @Override
   public int getIntHeader(String name) {
-    return request.getIntHeader(name);
+    return request().getIntHeader(name);
   }
 
   @Override
   public String getMethod() {
-    return request.getMethod();
+    return request().getMethod();
   }
 
   @Override
   public String getPathInfo() {
-    return request.getPathInfo();
+    return request().getPathInfo();
   }
 
   @Override
   public String getPathTranslated() {
-    return request.getPathTranslated();
+    return request().getPathTranslated();
   }
 
   @Override
   public String getContextPath() {
-    return request.getContextPath();
+    return request().getContextPath();
   }
 
   @Override
   public String getQueryString() {
-    return request.getQueryString();
+    return request().getQueryString();
   }
 
   @Override
   public String getRemoteUser() {
-    return request.getRemoteUser();
+    return request().getRemoteUser();
   }
 
   @Override
   public boolean isUserInRole(String role) {
-    return request.isUserInRole(role);
+    return request().isUserInRole(role);
   }
 
   @Override
   public Principal getUserPrincipal() {
-    return request.getUserPrincipal();
+    return request().getUserPrincipal();
   }
 
   @Override
   public String getRequestedSessionId() {
-    return request.getRequestedSessionId();
+    return request().getRequestedSessionId();
   }
 
   @Override
   public String getRequestURI() {
-    return request.getRequestURI();
+    return request().getRequestURI();
   }
 
   @Override
   public StringBuffer getRequestURL() {
-    return request.getRequestURL();
+    return request().getRequestURL();
   }
 
   @Override
   public String getServletPath() {
-    return request.getServletPath();
+    return request().getServletPath();
   }
 
   @Override
   public HttpSession getSession(boolean create) {
-    return request.getSession(create);
+    return request().getSession(create);
   }
 
   @Override
   public HttpSession getSession() {
-    return request.getSession();
+    return request().getSession();
   }
 
   @Override
   public boolean isRequestedSessionIdValid() {
-    return request.isRequestedSessionIdValid();
+    return request().isRequestedSessionIdValid();
   }
 
   @Override
   public boolean isRequestedSessionIdFromCookie() {
-    return request.isRequestedSessionIdFromCookie();
+    return request().isRequestedSessionIdFromCookie();
   }
 
   @Override
   public boolean isRequestedSessionIdFromURL() {
-    return request.isRequestedSessionIdFromURL();
+    return request().isRequestedSessionIdFromURL();
   }
 
   @Override
   public boolean isRequestedSessionIdFromUrl() {
-    return request.isRequestedSessionIdFromUrl();
+    return request().isRequestedSessionIdFromUrl();
   }
 
   @Override
   public boolean authenticate(HttpServletResponse response) throws IOException, ServletException {
-    return request.authenticate(response);
+    return request().authenticate(response);
   }
 
   @Override
   public void login(String username, String password) throws ServletException {
-    request.login(username,password);
+    request().login(username,password);
   }
 
   @Override
   public void logout() throws ServletException {
-    request.logout();
+    request().logout();
   }
 
   @Override
   public Collection<Part> getParts() throws IOException, ServletException {
-    return request.getParts();
+    return request().getParts();
   }
 
   @Override
   public Part getPart(String name) throws IOException, ServletException {
-    return request.getPart(name);
+    return request().getPart(name);
   }
 }
@@ -22,183 +22,196 @@ public class HttpResponseFacade implements HttpServletResponse {
     this.response = response;
   }
 
+  /** 对应的响应已经回收，之后通过这个外观对象的访问都会抛出{@link IllegalStateException} */
+  public void clear() {
+    response = null;
+  }
+
+  private HttpResponse response() {
+    HttpResponse current = response;
+    if (current == null) {
+      throw new IllegalStateException("Response object has been recycled");
+    }
+    return current;
+  }
+
   @Override
   public String getCharacterEncoding() {
-    return response.getCharacterEncoding();
+    return response().getCharacterEncoding();
   }
 
   @Override
   public String getContentType() {
-    return response.getContentType();
+    return response().getContentType();
   }
 
   @Override
   public ServletOutputStream getOutputStream() throws IOException {
-    return response.getOutputStream();
+    return response().getOutputStream();
   }
 
   @Override
   public PrintWriter getWriter() throws IOException {
-    return response.getWriter();
+    return response().getWriter();
   }
 
   @Override
   public void setCharacterEncoding(String charset) {
-    response.setCharacterEncoding(charset);
+    response().setCharacterEncoding(charset);
   }
 
   @Override
   public void setContentLength(int len) {
-    response.setContentLength(len);
+    response().setContentLength(len);
   }
 
   @Override
   public void setContentType(String type) {
-    response.setContentType(type);
+    response().setContentType(type);
   }
 
   @Override
   public void setBufferSize(int size) {
-    response.setBufferSize(size);
+    response().setBufferSize(size);
   }
 
   @Override
   public int getBufferSize() {
-    return response.getBufferSize();
+    return response().getBufferSize();
   }
 
   @Override
   public void flushBuffer() throws IOException {
-    response.flushBuffer();
+    response().flushBuffer();
   }
 
   @Override
   public void resetBuffer() {
-    response.resetBuffer();
+    response().resetBuffer();
   }
 
   @Override
   public boolean isCommitted() {
-    return response.isCommitted();
+    return response().isCommitted();
   }
 
   @Override
   public void reset() {
-    response.reset();
+    response().reset();
   }
 
   @Override
   public void setLocale(Locale loc) {
-    response.setLocale(loc);
+    response().setLocale(loc);
   }
 
   @Override
   public Locale getLocale() {
-    return response.getLocale();
+    return response().getLocale();
   }
 
   @Override
   public void addCookie(Cookie cookie) {
-    response.addCookie(cookie);
+    response().addCookie(cookie);
   }
 
   @Override
   public boolean containsHeader(String name) {
-    return response.containsHeader(name);
+    return response().containsHeader(name);
   }
 
   @Override
   public String encodeURL(String url) {
-    return response.encodeURL(url);
+    return response().encodeURL(url);
   }
 
   @Override
   public String encodeRedirectURL(String url) {
-    return response.encodeRedirectURL(url);
+    return response().encodeRedirectURL(url);
   }
 
   @Override
   public String encodeUrl(String url) {
-    return response.encodeUrl(url);
+    return response().encodeUrl(url);
   }
 
   @Override
   public String encodeRedirectUrl(String url) {
-    return response.encodeRedirectUrl(url);
+    return response().encodeRedirectUrl(url);
   }
 
   @Override
   public void sendError(int sc, String msg) throws IOException {
-    response.sendError(sc, msg);
+    response().sendError(sc, msg);
   }
 
   @Override
   public void sendError(int sc) throws IOException {
-    response.sendError(sc);
+    response().sendError(sc);
   }
 
   @Override
   public void sendRedirect(String location) throws IOException {
-    response.sendRedirect(location);
+    response().sendRedirect(location);
   }
 
   @Override
   public void setDateHeader(String name, long date) {
-    response.setDateHeader(name, date);
+    response().setDateHeader(name, date);
   }
 
   @Override
   public void addDateHeader(String name, long date) {
-    response.addDateHeader(name, date);
+    response().addDateHeader(name, date);
   }
 
   @Override
   public void setHeader(String name, String value) {
-    response.setHeader(name, value);
+    response().setHeader(name, value);
   }
 
   @Override
   public void addHeader(String name, String value) {
-    response.addHeader(name, value);
+    response().addHeader(name, value);
   }
 
   @Override
   public void setIntHeader(String name, int value) {
-    response.setIntHeader(name, value);
+    response().setIntHeader(name, value);
   }
 
   @Override
   public void addIntHeader(String name, int value) {
-    response.addIntHeader(name, value);
+    response().addIntHeader(name, value);
   }
 
   @Override
   public void setStatus(int sc) {
-    response.setStatus(sc);
+    response().setStatus(sc);
   }
 
   @Override
   public void setStatus(int sc, String sm) {
-    response.setStatus(sc, sm);
+    response().setStatus(sc, sm);
   }
 
   @Override
   public int getStatus() {
-    return response.getStatus();
+    return response().getStatus();
   }
 
   @Override
   public String getHeader(String name) {
-    return response.getHeader(name);
+    return response().getHeader(name);
   }
 
   @Override
   public Collection<String> getHeaders(String name) {
-    return response.getHeaders(name);
+    return response().getHeaders(name);
   }
 
   @Override
   public Collection<String> getHeaderNames() {
-    return response.getHeaderNames();
+    return response().getHeaderNames();
   }
 }
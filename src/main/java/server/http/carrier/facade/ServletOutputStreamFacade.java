@@ -0,0 +1,55 @@
+package server.http.carrier.facade;
+
+import server.http.stream.ResponseStream;
+
+import javax.servlet.ServletOutputStream;
+import java.io.IOException;
+
+/**
+ * 交给Servlet的响应输出流。内部的{@link ResponseStream}在多个响应之间复用，servlet只能拿到这个外观对象，
+ * 响应回收后通过它的访问都会抛出{@link IllegalStateException}，不会写进下一个响应。
+ *
+ * @author zhout
+ * @date 2020/7/8 10:20
+ */
+public class ServletOutputStreamFacade extends ServletOutputStream {
+  /** 内部输出流 */
+  private ResponseStream stream;
+
+  public ServletOutputStreamFacade(ResponseStream stream) {
+    this.stream = stream;
+  }
+
+  /** 对应的响应已经回收 */
+  public void clear() {
+    stream = null;
+  }
+
+  private ResponseStream stream() {
+    ResponseStream current = stream;
+    if (current == null) {
+      throw new IllegalStateException("Response stream has been recycled");
+    }
+    return current;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    stream().write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    stream().write(b, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    stream().flush();
+  }
+
+  @Override
+  public void close() {
+    stream().close();
+  }
+}
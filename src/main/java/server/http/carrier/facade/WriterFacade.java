@@ -0,0 +1,68 @@
+package server.http.carrier.facade;
+
+import server.http.stream.ResponseStream;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * 交给Servlet的PrintWriter实际写入的Writer。内部的编码器在编码相同的响应之间复用，响应回收后写入会抛出{@link IOException}，
+ * 外层的PrintWriter把它记为错误，旧的writer不会写进下一个响应。
+ *
+ * <p>关闭时只刷出编码器并关闭响应输出流，编码器本身留给下一个响应。
+ *
+ * @author zhout
+ * @date 2020/7/8 10:40
+ */
+public class WriterFacade extends Writer {
+  /** 内部编码器，写入stream */
+  private OutputStreamWriter encoder;
+
+  private ResponseStream stream;
+
+  public WriterFacade(OutputStreamWriter encoder, ResponseStream stream) {
+    this.encoder = encoder;
+    this.stream = stream;
+  }
+
+  /** 对应的响应已经回收 */
+  public void clear() {
+    encoder = null;
+    stream = null;
+  }
+
+  private OutputStreamWriter encoder() throws IOException {
+    OutputStreamWriter current = encoder;
+    if (current == null) {
+      throw new IOException("Response writer has been recycled");
+    }
+    return current;
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    encoder().write(c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    encoder().write(cbuf, off, len);
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    encoder().write(str, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    encoder().flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    encoder().flush();
+    stream.close();
+  }
+}
@@ -0,0 +1,353 @@
+package server.http.multipart;
+
+import server.http.carrier.ResponseHeaders;
+
+import javax.servlet.MultipartConfigElement;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * multipart/form-data请求体的流式解析器。请求体通过一个固定大小的缓冲区读取，用Boyer-Moore-Horspool算法查找分隔符
+ * "CRLF--boundary"，分隔符之前的数据直接追加到当前的{@link StandardPart}，整个请求体不会同时出现在内存中。
+ *
+ * <p>每个部分不能超过maxFileSize，读取的请求体总大小不能超过maxRequestSize，超出时抛出{@link IllegalStateException}；
+ * 格式错误或者请求体不完整抛出{@link IOException}。解析失败时已经创建的临时文件都会被删除。
+ *
+ * @author zhout
+ * @date 2020/7/7 14:30
+ */
+public class MultipartParser {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /** 一个部分的头部允许的最大长度 */
+  private static final int MAX_HEADER_SIZE = 8192;
+
+  /** RFC 2046规定boundary最长70个字符 */
+  private static final int MAX_BOUNDARY_LENGTH = 70;
+
+  /** 一个请求最多包含的部分数 */
+  private static final int MAX_PART_COUNT = 1000;
+
+  private final InputStream input;
+
+  /** 分隔符：CRLF--boundary */
+  private final byte[] delimiter;
+
+  /** Horspool算法的坏字符跳转表 */
+  private final int[] shifts = new int[256];
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  /** 缓冲区中未处理数据的起止位置 */
+  private int head;
+
+  private int tail;
+
+  /** 已经从请求体读取的字节数 */
+  private long total;
+
+  private final long maxRequestSize;
+
+  private final long maxFileSize;
+
+  private final int fileSizeThreshold;
+
+  private final File location;
+
+  /** 部分头部的编码 */
+  private final Charset headerCharset;
+
+  /**
+   * 构造方法
+   *
+   * @param input 请求体输入流
+   * @param boundary Content-Type中的boundary
+   * @param config 上传配置
+   * @param headerEncoding 部分头部（包括文件名）的编码，为null时使用UTF-8
+   */
+  public MultipartParser(
+      InputStream input, String boundary, MultipartConfigElement config, String headerEncoding) {
+    this.input = input;
+    this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+    this.maxRequestSize = config.getMaxRequestSize();
+    this.maxFileSize = config.getMaxFileSize();
+    this.fileSizeThreshold = Math.max(0, config.getFileSizeThreshold());
+    this.location = resolveLocation(config.getLocation());
+    this.headerCharset = StandardPart.toCharset(headerEncoding, StandardCharsets.UTF_8);
+    int last = delimiter.length - 1;
+    Arrays.fill(shifts, delimiter.length);
+    for (int i = 0; i < last; i++) {
+      shifts[delimiter[i] & 0xFF] = last - i;
+    }
+  }
+
+  /**
+   * 上传目录，没有配置时使用系统临时目录，相对路径相对于系统临时目录，不存在时创建
+   *
+   * @param location 配置的目录
+   * @return 上传目录
+   */
+  public static File resolveLocation(String location) {
+    File tmpdir = new File(System.getProperty("java.io.tmpdir"));
+    File directory = tmpdir;
+    if (location != null && !location.isEmpty()) {
+      directory = new File(location);
+      if (!directory.isAbsolute()) {
+        directory = new File(tmpdir, location);
+      }
+    }
+    if (!directory.isDirectory()) {
+      directory.mkdirs();
+    }
+    return directory;
+  }
+
+  /**
+   * 从Content-Type中取出boundary
+   *
+   * @param contentType 请求的Content-Type
+   * @return boundary，不存在或者不合法时返回null
+   */
+  public static String parseBoundary(String contentType) {
+    String boundary = getHeaderParameter(contentType, "boundary");
+    if (boundary == null || boundary.isEmpty() || boundary.length() > MAX_BOUNDARY_LENGTH) {
+      return null;
+    }
+    return boundary;
+  }
+
+  /**
+   * 解析整个请求体
+   *
+   * @return 按顺序排列的所有部分
+   * @throws IOException 格式错误、请求体不完整或者写临时文件出错
+   */
+  public List<StandardPart> parse() throws IOException {
+    List<StandardPart> parts = new ArrayList<>();
+    StandardPart current = null;
+    try {
+      // 把请求体看作以CRLF开头，第一个分隔符也可以按"CRLF--boundary"查找，之前的前导内容被丢弃
+      buffer[0] = '\r';
+      buffer[1] = '\n';
+      tail = 2;
+      readBody(null);
+      while (true) {
+        int first = readByte();
+        int second = readByte();
+        // 最后一个分隔符以"--"结尾，之后的内容由请求结束时丢弃
+        if (first == '-' && second == '-') {
+          return parts;
+        }
+        // 分隔符之后允许有空白
+        while (first == ' ' || first == '\t') {
+          first = second;
+          second = readByte();
+        }
+        if (first != '\r' || second != '\n') {
+          throw new IOException("Invalid multipart delimiter!");
+        }
+        if (parts.size() == MAX_PART_COUNT) {
+          throw new IllegalStateException("More than " + MAX_PART_COUNT + " parts in the request");
+        }
+        current = createPart(readHeaders());
+        readBody(current);
+        current.finish();
+        parts.add(current);
+        current = null;
+      }
+    } catch (IOException | RuntimeException e) {
+      if (current != null) {
+        current.release();
+      }
+      for (StandardPart part : parts) {
+        part.release();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * 读取数据直到下一个分隔符，分隔符被跳过
+   *
+   * @param part 接收数据的部分，为null时丢弃数据
+   * @throws IOException 请求体在分隔符之前结束
+   */
+  private void readBody(StandardPart part) throws IOException {
+    int keep = delimiter.length - 1;
+    while (true) {
+      int index = indexOfDelimiter();
+      if (index >= 0) {
+        if (part != null) {
+          part.append(buffer, head, index - head);
+        }
+        head = index + delimiter.length;
+        return;
+      }
+      // 末尾不足一个分隔符长度的数据可能是分隔符的开头，留到下次查找
+      int safe = tail - keep;
+      if (safe > head) {
+        if (part != null) {
+          part.append(buffer, head, safe - head);
+        }
+        head = safe;
+      }
+      if (fill() < 0) {
+        throw new EOFException("Multipart body is incomplete!");
+      }
+    }
+  }
+
+  /** 在缓冲区的未处理数据中查找分隔符，找不到返回-1 */
+  private int indexOfDelimiter() {
+    int last = delimiter.length - 1;
+    int i = head;
+    while (i + last < tail) {
+      int j = last;
+      while (buffer[i + j] == delimiter[j]) {
+        if (j == 0) {
+          return i;
+        }
+        j--;
+      }
+      i += shifts[buffer[i + last] & 0xFF];
+    }
+    return -1;
+  }
+
+  /**
+   * 读取一个部分的头部，直到空行
+   *
+   * @return 头部
+   * @throws IOException 格式错误或者头部过大
+   */
+  private ResponseHeaders readHeaders() throws IOException {
+    ResponseHeaders headers = new ResponseHeaders();
+    byte[] line = new byte[256];
+    int size = 0;
+    while (true) {
+      int length = 0;
+      int b;
+      while ((b = readByte()) != '\n') {
+        if (++size > MAX_HEADER_SIZE) {
+          throw new IllegalStateException("Multipart headers are too large");
+        }
+        if (length == line.length) {
+          line = Arrays.copyOf(line, length << 1);
+        }
+        line[length++] = (byte) b;
+      }
+      if (length > 0 && line[length - 1] == '\r') {
+        length--;
+      }
+      if (length == 0) {
+        return headers;
+      }
+      String header = new String(line, 0, length, headerCharset);
+      int colon = header.indexOf(':');
+      if (colon <= 0) {
+        throw new IOException("Invalid multipart header!");
+      }
+      headers.add(header.substring(0, colon).trim(), header.substring(colon + 1).trim());
+    }
+  }
+
+  private StandardPart createPart(ResponseHeaders headers) throws IOException {
+    String disposition = headers.get("Content-Disposition");
+    String name = getHeaderParameter(disposition, "name");
+    if (name == null) {
+      throw new IOException("Multipart part has no name!");
+    }
+    String fileName = getHeaderParameter(disposition, "filename");
+    return new StandardPart(headers, name, fileName, location, fileSizeThreshold, maxFileSize);
+  }
+
+  private int readByte() throws IOException {
+    if (head == tail && fill() < 0) {
+      throw new EOFException("Multipart body is incomplete!");
+    }
+    return buffer[head++] & 0xFF;
+  }
+
+  /**
+   * 把未处理的数据移到缓冲区开头，再从请求体读取
+   *
+   * @return 读取的字节数，请求体结束时返回-1
+   * @throws IOException 读取出错
+   */
+  private int fill() throws IOException {
+    if (head > 0) {
+      System.arraycopy(buffer, head, buffer, 0, tail - head);
+      tail -= head;
+      head = 0;
+    }
+    int read = input.read(buffer, tail, buffer.length - tail);
+    if (read > 0) {
+      total += read;
+      if (maxRequestSize >= 0 && total > maxRequestSize) {
+        throw new IllegalStateException(
+            "Multipart request exceeds the maximum request size " + maxRequestSize);
+      }
+      tail += read;
+    }
+    return read;
+  }
+
+  /**
+   * 取出形如{@code form-data; name="a"; filename="b.txt"}的头部中的参数，参数值可以带引号。
+   * 引号中的反斜杠按原样保留，IE会在文件名中带上Windows路径
+   *
+   * @param header 头部的值
+   * @param parameter 参数名，忽略大小写
+   * @return 参数值，不存在时返回null
+   */
+  static String getHeaderParameter(String header, String parameter) {
+    if (header == null) {
+      return null;
+    }
+    int length = header.length();
+    int pos = header.indexOf(';');
+    while (pos >= 0 && pos < length) {
+      // 跳过';'和空白
+      pos++;
+      while (pos < length && Character.isWhitespace(header.charAt(pos))) {
+        pos++;
+      }
+      int nameStart = pos;
+      while (pos < length && header.charAt(pos) != '=' && header.charAt(pos) != ';') {
+        pos++;
+      }
+      String name = header.substring(nameStart, pos).trim();
+      String value = null;
+      if (pos < length && header.charAt(pos) == '=') {
+        pos++;
+        while (pos < length && Character.isWhitespace(header.charAt(pos))) {
+          pos++;
+        }
+        if (pos < length && header.charAt(pos) == '"') {
+          int end = header.indexOf('"', pos + 1);
+          if (end < 0) {
+            end = length;
+          }
+          value = header.substring(pos + 1, end);
+          pos = header.indexOf(';', end);
+        } else {
+          int end = header.indexOf(';', pos);
+          value = header.substring(pos, end < 0 ? length : end).trim();
+          pos = end;
+        }
+      }
+      if (name.equalsIgnoreCase(parameter)) {
+        return value;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,263 @@
+package server.http.multipart;
+
+import server.http.carrier.ResponseHeaders;
+import server.util.RequestUtil;
+
+import javax.servlet.http.Part;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * multipart/form-data请求体中的一个部分。内容不超过fileSizeThreshold时保存在内存中，超过后整体转存到location下的临时文件，
+ * 之后的数据直接追加到文件；{@link #write(String)}优先通过重命名把临时文件移动到目标位置。
+ *
+ * <p>临时文件在请求结束时由{@link #release()}删除，已经通过write移动走的文件不会被删除。
+ *
+ * @author zhout
+ * @date 2020/7/7 15:20
+ */
+public class StandardPart implements Part {
+
+  private final ResponseHeaders headers;
+
+  private final String name;
+
+  /** 上传文件的原始文件名，普通表单字段为null */
+  private final String submittedFileName;
+
+  private final File location;
+
+  private final int fileSizeThreshold;
+
+  private final long maxFileSize;
+
+  /** 内存中的内容，转存到文件后为null */
+  private byte[] memory;
+
+  private long size;
+
+  /** 保存内容的文件，内容在内存中时为null */
+  private File file;
+
+  private OutputStream fileOutput;
+
+  /** 文件是否是本对象创建的临时文件，write之后文件归调用方所有 */
+  private boolean temporary;
+
+  StandardPart(
+      ResponseHeaders headers,
+      String name,
+      String submittedFileName,
+      File location,
+      int fileSizeThreshold,
+      long maxFileSize) {
+    this.headers = headers;
+    this.name = name;
+    this.submittedFileName = submittedFileName;
+    this.location = location;
+    this.fileSizeThreshold = fileSizeThreshold;
+    this.maxFileSize = maxFileSize;
+  }
+
+  /**
+   * 追加内容，超过阈值时转存到临时文件
+   *
+   * @param b 数据
+   * @param off 起始位置
+   * @param len 长度
+   * @throws IOException 写临时文件出错
+   */
+  void append(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return;
+    }
+    long newSize = size + len;
+    if (maxFileSize >= 0 && newSize > maxFileSize) {
+      throw new IllegalStateException(
+          String.format("Part %s exceeds the maximum file size %d", name, maxFileSize));
+    }
+    if (file == null && newSize <= fileSizeThreshold) {
+      if (memory == null || memory.length < newSize) {
+        int capacity = memory == null ? 256 : memory.length << 1;
+        capacity = (int) Math.min(fileSizeThreshold, Math.max(capacity, newSize));
+        memory = memory == null ? new byte[capacity] : Arrays.copyOf(memory, capacity);
+      }
+      System.arraycopy(b, off, memory, (int) size, len);
+      size = newSize;
+      return;
+    }
+    if (file == null) {
+      spill();
+    }
+    fileOutput.write(b, off, len);
+    size = newSize;
+  }
+
+  /** 把内存中的内容转存到临时文件 */
+  private void spill() throws IOException {
+    file = File.createTempFile("upload_", ".tmp", location);
+    temporary = true;
+    fileOutput = new FileOutputStream(file);
+    if (memory != null) {
+      fileOutput.write(memory, 0, (int) size);
+      memory = null;
+    }
+  }
+
+  /**
+   * 内容已经全部写入，关闭临时文件
+   *
+   * @throws IOException 关闭出错
+   */
+  void finish() throws IOException {
+    if (fileOutput != null) {
+      OutputStream output = fileOutput;
+      fileOutput = null;
+      output.close();
+    }
+  }
+
+  /** 删除本对象创建的临时文件，请求结束或者解析失败时调用 */
+  public void release() {
+    try {
+      finish();
+    } catch (IOException ignored) {
+      // 文件马上被删除，关闭失败不影响
+    }
+    memory = null;
+    if (file != null && temporary) {
+      file.delete();
+    }
+    file = null;
+  }
+
+  /**
+   * 把内容按字符串读取，用于普通表单字段
+   *
+   * @param defaultEncoding Content-Type没有指定charset时使用的编码，为null时使用ISO-8859-1
+   * @return 字符串
+   * @throws IOException 读取临时文件出错
+   */
+  public String getString(String defaultEncoding) throws IOException {
+    String encoding = RequestUtil.parseCharacterEncoding(getContentType());
+    if (encoding == null) {
+      encoding = defaultEncoding;
+    }
+    Charset charset = toCharset(encoding, StandardCharsets.ISO_8859_1);
+    if (file == null) {
+      return memory == null ? "" : new String(memory, 0, (int) size, charset);
+    }
+    return new String(Files.readAllBytes(file.toPath()), charset);
+  }
+
+  /**
+   * 按名称查找字符编码，客户端给出的编码名称可能不合法
+   *
+   * @param encoding 编码名称
+   * @param defaultCharset 名称为null、不合法或者不支持时使用的编码
+   * @return 字符编码
+   */
+  static Charset toCharset(String encoding, Charset defaultCharset) {
+    if (encoding == null) {
+      return defaultCharset;
+    }
+    try {
+      return Charset.forName(encoding);
+    } catch (IllegalArgumentException e) {
+      return defaultCharset;
+    }
+  }
+
+  /** 上传文件的原始文件名，普通表单字段返回null */
+  public String getSubmittedFileName() {
+    return submittedFileName;
+  }
+
+  /** 内容是否已经转存到文件 */
+  public boolean isInMemory() {
+    return file == null;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    if (file != null) {
+      return Files.newInputStream(file.toPath());
+    }
+    return new ByteArrayInputStream(memory == null ? new byte[0] : memory, 0, (int) size);
+  }
+
+  @Override
+  public String getContentType() {
+    return headers.get("Content-Type");
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * 把内容写到文件，相对路径相对于上传目录。内容在临时文件中时直接移动
+   *
+   * @param fileName 文件名
+   * @throws IOException 写出错
+   */
+  @Override
+  public void write(String fileName) throws IOException {
+    File target = new File(fileName);
+    if (!target.isAbsolute()) {
+      target = new File(location, fileName);
+    }
+    if (file == null) {
+      try (OutputStream output = new FileOutputStream(target)) {
+        if (memory != null) {
+          output.write(memory, 0, (int) size);
+        }
+      }
+      return;
+    }
+    finish();
+    if (temporary) {
+      Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      file = target;
+      temporary = false;
+    } else {
+      Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  @Override
+  public void delete() throws IOException {
+    release();
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  @Override
+  public Collection<String> getHeaders(String name) {
+    return headers.getAll(name);
+  }
+
+  @Override
+  public Collection<String> getHeaderNames() {
+    return headers.getNames();
+  }
+}
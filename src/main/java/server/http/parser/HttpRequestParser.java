@@ -0,0 +1,307 @@
+package server.http.parser;
+
+import server.constant.HttpConstant;
+import server.constant.HttpVersionConstant;
+import server.enums.HTTPMethodEnum;
+import server.http.carrier.HttpRequest;
+import server.http.stream.InputBuffer;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 请求行和请求头的字节级解析器。直接在连接读缓冲区上用状态机扫描，每个字节只看一次， 解析过程中不创建字符串；请求头不完整时读入更多数据后从上次停下的位置继续。
+ *
+ * <p>扫描时记录的都是相对请求起始位置的偏移量，所以读入数据时缓冲区被compact也不影响已扫描的部分。 请求头完整后整体拷贝一次到可复用的字节数组，缓冲区position移动到请求体开头，
+ * 请求头的值在第一次读取时才创建字符串。每个HttpProcess持有一个解析器，多个请求之间复用。
+ *
+ * <p>请求头的总长度受连接读缓冲区大小限制，超出或者格式不合法时抛出{@link ServletException}。
+ *
+ * @author zhout
+ * @date 2020/7/4 11:30
+ */
+public class HttpRequestParser {
+
+  private static final int INITIAL_HEAD_SIZE = 1024;
+
+  private static final int REQUEST_METHOD = 0;
+  private static final int REQUEST_URI = 1;
+  private static final int REQUEST_PROTOCOL = 2;
+  private static final int LINE_END = 3;
+  private static final int HEADER_START = 4;
+  private static final int HEADER_NAME = 5;
+  private static final int HEADER_VALUE_START = 6;
+  private static final int HEADER_VALUE = 7;
+  private static final int HEAD_END = 8;
+
+  private static final HTTPMethodEnum[] METHODS = HTTPMethodEnum.values();
+
+  private static final String[] PROTOCOLS = {
+    HttpVersionConstant.HTTP_1_1, HttpVersionConstant.HTTP_1_0
+  };
+
+  /** RFC 7230 token允许的字符 */
+  private static final boolean[] TOKEN = new boolean[128];
+
+  static {
+    for (char c = '0'; c <= '9'; c++) {
+      TOKEN[c] = true;
+    }
+    for (char c = 'a'; c <= 'z'; c++) {
+      TOKEN[c] = true;
+      TOKEN[c - 'a' + 'A'] = true;
+    }
+    for (char c : "!#$%&'*+-.^_`|~".toCharArray()) {
+      TOKEN[c] = true;
+    }
+  }
+
+  private final RequestHeaders headers = new RequestHeaders();
+
+  /** 完整请求头的拷贝，偏移量和扫描时一致 */
+  private byte[] head = new byte[INITIAL_HEAD_SIZE];
+
+  private int state;
+
+  /** 下一个要扫描的字节，相对请求起始位置 */
+  private int index;
+
+  private int methodEnd;
+  private int uriStart;
+  private int uriEnd;
+  private int protocolStart;
+  private int protocolEnd;
+  private int nameStart;
+  private int nameEnd;
+  private int valueStart;
+  private int valueEnd;
+
+  /**
+   * 从输入缓冲区解析一个请求的请求行和请求头，填充到request中。解析完成后缓冲区position位于请求体开头
+   *
+   * @param input 连接输入缓冲区
+   * @param request 请求
+   * @return 是否读到了请求，连接上没有数据就被关闭时返回false
+   * @throws IOException 读取出错
+   * @throws ServletException 请求行或请求头不合法、过长或不完整
+   */
+  public boolean parse(InputBuffer input, HttpRequest request)
+      throws IOException, ServletException {
+    recycle();
+    ByteBuffer buffer = input.getBuffer();
+    if (!skipBlankLines(input, buffer)) {
+      return false;
+    }
+    int length;
+    while ((length = scan(buffer)) < 0) {
+      if (input.isFull()) {
+        throw new ServletException("HTTP request header is too large!");
+      }
+      if (input.fill() < 0) {
+        throw new ServletException("HTTP request header is incomplete!");
+      }
+    }
+    if (head.length < length) {
+      head = new byte[Math.max(length, head.length << 1)];
+    }
+    buffer.get(head, 0, length);
+    headers.setBytes(head);
+
+    request.setMethod(method());
+    request.setRequestURI(toString(uriStart, uriEnd));
+    request.setProtocol(protocol());
+    request.setHeaders(headers);
+    return true;
+  }
+
+  private void recycle() {
+    state = REQUEST_METHOD;
+    index = 0;
+    headers.recycle();
+  }
+
+  /**
+   * 忽略请求行之前的空行
+   *
+   * @return 是否有请求数据，连接被关闭时返回false
+   */
+  private boolean skipBlankLines(InputBuffer input, ByteBuffer buffer) throws IOException {
+    while (true) {
+      while (buffer.hasRemaining()) {
+        byte b = buffer.get(buffer.position());
+        if (b != HttpConstant.CARRIAGE_RETURN && b != HttpConstant.LINE_FEED) {
+          return true;
+        }
+        buffer.position(buffer.position() + 1);
+      }
+      if (input.fill() < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * 从上次停下的位置继续扫描缓冲区中的数据
+   *
+   * @param buffer 读模式的缓冲区，position是请求起始位置
+   * @return 请求头（包括结尾空行）的长度，请求头还不完整时返回-1
+   * @throws ServletException 请求行或请求头不合法
+   */
+  private int scan(ByteBuffer buffer) throws ServletException {
+    byte[] buf = buffer.array();
+    int base = buffer.arrayOffset() + buffer.position();
+    int end = buffer.remaining();
+    for (int i = index; i < end; i++) {
+      byte b = buf[base + i];
+      switch (state) {
+        case REQUEST_METHOD:
+          if (b == HttpConstant.SPACE && i > 0) {
+            methodEnd = i;
+            uriStart = i + 1;
+            state = REQUEST_URI;
+          } else if (!isToken(b)) {
+            throw badRequestLine();
+          }
+          break;
+        case REQUEST_URI:
+          if (b == HttpConstant.SPACE && i > uriStart) {
+            uriEnd = i;
+            protocolStart = i + 1;
+            state = REQUEST_PROTOCOL;
+          } else if (isControl(b) || b == HttpConstant.SPACE) {
+            throw badRequestLine();
+          }
+          break;
+        case REQUEST_PROTOCOL:
+          if ((b == HttpConstant.CARRIAGE_RETURN || b == HttpConstant.LINE_FEED)
+              && i > protocolStart) {
+            protocolEnd = i;
+            state = b == HttpConstant.CARRIAGE_RETURN ? LINE_END : HEADER_START;
+          } else if (isControl(b) || b == HttpConstant.SPACE) {
+            throw badRequestLine();
+          }
+          break;
+        case LINE_END:
+          if (b != HttpConstant.LINE_FEED) {
+            throw badHeader();
+          }
+          state = HEADER_START;
+          break;
+        case HEADER_START:
+          if (b == HttpConstant.CARRIAGE_RETURN) {
+            state = HEAD_END;
+          } else if (b == HttpConstant.LINE_FEED) {
+            return i + 1;
+          } else if (isToken(b)) {
+            // 以空白开头的续行（obs-fold）已被RFC 7230废弃，按非法请求处理
+            nameStart = i;
+            state = HEADER_NAME;
+          } else {
+            throw badHeader();
+          }
+          break;
+        case HEADER_NAME:
+          if (b == HttpConstant.COLON) {
+            nameEnd = i;
+            state = HEADER_VALUE_START;
+          } else if (!isToken(b)) {
+            throw badHeader();
+          }
+          break;
+        case HEADER_VALUE_START:
+          if (b == HttpConstant.SPACE || b == HttpConstant.HORIZONTAL_TAB) {
+            break;
+          }
+          valueStart = i;
+          valueEnd = i;
+          if (b == HttpConstant.CARRIAGE_RETURN || b == HttpConstant.LINE_FEED) {
+            endHeader(b);
+          } else if (isControl(b)) {
+            throw badHeader();
+          } else {
+            valueEnd = i + 1;
+            state = HEADER_VALUE;
+          }
+          break;
+        case HEADER_VALUE:
+          if (b == HttpConstant.CARRIAGE_RETURN || b == HttpConstant.LINE_FEED) {
+            endHeader(b);
+          } else if (b != HttpConstant.SPACE && b != HttpConstant.HORIZONTAL_TAB) {
+            if (isControl(b)) {
+              throw badHeader();
+            }
+            valueEnd = i + 1;
+          }
+          break;
+        default:
+          // HEAD_END：空行的CR之后必须是LF
+          if (b != HttpConstant.LINE_FEED) {
+            throw badHeader();
+          }
+          return i + 1;
+      }
+    }
+    index = end;
+    return -1;
+  }
+
+  /** 一个请求头读取完毕，值末尾的空白已经由valueEnd排除 */
+  private void endHeader(byte b) {
+    headers.add(nameStart, nameEnd, valueStart, valueEnd);
+    state = b == HttpConstant.CARRIAGE_RETURN ? LINE_END : HEADER_START;
+  }
+
+  /** 常见的请求方法直接返回枚举名字，不创建新字符串 */
+  private String method() {
+    for (HTTPMethodEnum method : METHODS) {
+      if (regionEquals(method.name(), 0, methodEnd)) {
+        return method.name();
+      }
+    }
+    return toString(0, methodEnd);
+  }
+
+  private String protocol() {
+    for (String protocol : PROTOCOLS) {
+      if (regionEquals(protocol, protocolStart, protocolEnd)) {
+        return protocol;
+      }
+    }
+    return toString(protocolStart, protocolEnd);
+  }
+
+  private boolean regionEquals(String value, int start, int end) {
+    if (value.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (head[i] != value.charAt(i - start)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String toString(int start, int end) {
+    return new String(head, start, end - start, StandardCharsets.ISO_8859_1);
+  }
+
+  private static boolean isToken(byte b) {
+    return b > 0 && TOKEN[b];
+  }
+
+  /** 除水平制表符外的控制字符，obs-text（0x80以上）不算 */
+  private static boolean isControl(byte b) {
+    return (b >= 0 && b < HttpConstant.SPACE && b != HttpConstant.HORIZONTAL_TAB) || b == 0x7F;
+  }
+
+  private static ServletException badRequestLine() {
+    return new ServletException("HTTP request line is not standard！");
+  }
+
+  private static ServletException badHeader() {
+    return new ServletException("HTTP request header is not standard!");
+  }
+}
@@ -0,0 +1,352 @@
+package server.http.parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.util.ParameterMap;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一个请求的查询参数和表单参数。解析时只扫描一遍application/x-www-form-urlencoded格式的字节，记录每个参数名字和值的偏移量，
+ * 名字在第一次按名字查找时统一解码并建立索引，值在第一次被读取时才解码。同名参数通过下标链表串起来，添加时不复制数组。
+ *
+ * <p>没有'='的参数（例如{@code a}）和'='后为空的参数（例如{@code a=}）值都是空字符串，名字为空的参数被忽略；
+ * 不合法的%转义按原样保留，不会抛出异常。
+ *
+ * @author zhout
+ * @date 2020/7/7 10:30
+ */
+public class Parameters {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Parameters.class);
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  /** 一个请求最多解析的参数个数，防止大量参数消耗CPU和内存 */
+  private static final int MAX_PARAMETER_COUNT = 10000;
+
+  /** 名字中含有'%'或'+'，需要解码 */
+  private static final int NAME_ENCODED = 1;
+
+  /** 值中含有'%'或'+'，需要解码 */
+  private static final int VALUE_ENCODED = 2;
+
+  /** 参数所在的字节数组，最多两个：查询字符串和表单请求体 */
+  private byte[][] sources = new byte[2][];
+
+  private int sourceCount;
+
+  private int count;
+
+  /** 参数所在的字节数组在{@link #sources}中的下标，已经解码的参数为-1 */
+  private int[] sourceIndexes = new int[INITIAL_CAPACITY];
+
+  private int[] nameStarts = new int[INITIAL_CAPACITY];
+
+  private int[] nameEnds = new int[INITIAL_CAPACITY];
+
+  /** 值的起始位置，没有'='时与结束位置相同 */
+  private int[] valueStarts = new int[INITIAL_CAPACITY];
+
+  private int[] valueEnds = new int[INITIAL_CAPACITY];
+
+  private int[] flags = new int[INITIAL_CAPACITY];
+
+  /** 下一个同名参数的下标，-1表示没有，建立索引时填充 */
+  private int[] nexts = new int[INITIAL_CAPACITY];
+
+  /** 已经解码的值 */
+  private String[] values = new String[INITIAL_CAPACITY];
+
+  /** 通过{@link #add(String, String)}添加的参数名，其他参数的名字从字节数组解码 */
+  private String[] names = new String[INITIAL_CAPACITY];
+
+  /** 名字到同名参数链表的索引，按参数第一次出现的顺序排列，为null时还没有建立 */
+  private Map<String, Chain> index;
+
+  private ParameterMap map;
+
+  private Charset charset = StandardCharsets.ISO_8859_1;
+
+  /** 解码用的临时数组 */
+  private byte[] scratch;
+
+  /** 清空参数，准备处理下一个请求 */
+  public void recycle() {
+    Arrays.fill(sources, 0, sourceCount, null);
+    Arrays.fill(values, 0, count, null);
+    Arrays.fill(names, 0, count, null);
+    sourceCount = 0;
+    count = 0;
+    index = null;
+    map = null;
+    charset = StandardCharsets.ISO_8859_1;
+  }
+
+  /**
+   * 设置解码使用的字符编码，需要在读取参数之前调用
+   *
+   * @param encoding 编码名称，为null或者不支持时使用ISO-8859-1
+   */
+  public void setEncoding(String encoding) {
+    charset = StandardCharsets.ISO_8859_1;
+    if (encoding == null) {
+      return;
+    }
+    try {
+      charset = Charset.forName(encoding);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Unsupported parameter encoding {}, use ISO-8859-1 instead.", encoding);
+    }
+  }
+
+  /**
+   * 扫描一段application/x-www-form-urlencoded格式的字节，记录其中的参数。字节数组被直接引用，之后不能再修改
+   *
+   * @param bytes 字节数组
+   * @param start 起始位置
+   * @param end 结束位置（不包含）
+   */
+  public void addBytes(byte[] bytes, int start, int end) {
+    if (start >= end) {
+      return;
+    }
+    if (sourceCount == sources.length) {
+      sources = Arrays.copyOf(sources, sourceCount << 1);
+    }
+    int source = sourceCount++;
+    sources[source] = bytes;
+    index = null;
+    map = null;
+
+    int pos = start;
+    while (pos < end) {
+      int nameStart = pos;
+      int nameEnd = -1;
+      int flag = 0;
+      for (; pos < end; pos++) {
+        byte b = bytes[pos];
+        if (b == '&') {
+          break;
+        }
+        if (b == '=') {
+          if (nameEnd < 0) {
+            nameEnd = pos;
+          }
+        } else if (b == '%' || b == '+') {
+          flag |= nameEnd < 0 ? NAME_ENCODED : VALUE_ENCODED;
+        }
+      }
+      int valueEnd = pos++;
+      int valueStart;
+      if (nameEnd < 0) {
+        nameEnd = valueEnd;
+        valueStart = valueEnd;
+      } else {
+        valueStart = nameEnd + 1;
+      }
+      // 名字为空的参数（例如"&&"或者"=b"）没有意义
+      if (nameStart == nameEnd) {
+        continue;
+      }
+      if (count == MAX_PARAMETER_COUNT) {
+        LOGGER.warn("More than {} parameters, the rest are ignored.", MAX_PARAMETER_COUNT);
+        return;
+      }
+      add(source, nameStart, nameEnd, valueStart, valueEnd, flag);
+    }
+  }
+
+  private void add(int source, int nameStart, int nameEnd, int valueStart, int valueEnd, int flag) {
+    if (count == nameStarts.length) {
+      int capacity = count << 1;
+      sourceIndexes = Arrays.copyOf(sourceIndexes, capacity);
+      nameStarts = Arrays.copyOf(nameStarts, capacity);
+      nameEnds = Arrays.copyOf(nameEnds, capacity);
+      valueStarts = Arrays.copyOf(valueStarts, capacity);
+      valueEnds = Arrays.copyOf(valueEnds, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+      nexts = Arrays.copyOf(nexts, capacity);
+      values = Arrays.copyOf(values, capacity);
+      names = Arrays.copyOf(names, capacity);
+    }
+    sourceIndexes[count] = source;
+    nameStarts[count] = nameStart;
+    nameEnds[count] = nameEnd;
+    valueStarts[count] = valueStart;
+    valueEnds[count] = valueEnd;
+    flags[count] = flag;
+    count++;
+  }
+
+  /**
+   * 添加一个已经解码的参数，例如multipart请求中的普通表单字段
+   *
+   * @param name 参数名
+   * @param value 参数值
+   */
+  public void add(String name, String value) {
+    if (count == MAX_PARAMETER_COUNT) {
+      LOGGER.warn("More than {} parameters, {} is ignored.", MAX_PARAMETER_COUNT, name);
+      return;
+    }
+    add(-1, 0, 0, 0, 0, 0);
+    names[count - 1] = name;
+    values[count - 1] = value;
+    index = null;
+    map = null;
+  }
+
+  /**
+   * 获取第一个同名参数的值
+   *
+   * @param name 参数名
+   * @return 值，不存在时返回null
+   */
+  public String getParameter(String name) {
+    Chain chain = index().get(name);
+    return chain == null ? null : value(chain.first);
+  }
+
+  /**
+   * 获取所有同名参数的值，按出现的顺序排列
+   *
+   * @param name 参数名
+   * @return 值数组，不存在时返回null
+   */
+  public String[] getParameterValues(String name) {
+    Chain chain = index().get(name);
+    if (chain == null) {
+      return null;
+    }
+    String[] result = new String[chain.size];
+    for (int i = 0, j = chain.first; j >= 0; i++, j = nexts[j]) {
+      result[i] = value(j);
+    }
+    return result;
+  }
+
+  /** 所有参数名，按第一次出现的顺序排列 */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(index().keySet());
+  }
+
+  /** 只读的参数Map，第一次调用时创建 */
+  public Map<String, String[]> getMap() {
+    if (map == null) {
+      Map<String, Chain> index = index();
+      ParameterMap result = new ParameterMap(Math.max(16, (int) (index.size() / 0.75f) + 1));
+      for (String name : index.keySet()) {
+        result.put(name, getParameterValues(name));
+      }
+      result.setLocked(true);
+      map = result;
+    }
+    return map;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /** 解码全部参数名，建立名字到同名参数链表的索引 */
+  private Map<String, Chain> index() {
+    if (index == null) {
+      Map<String, Chain> result = new LinkedHashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+      for (int i = 0; i < count; i++) {
+        String name = names[i];
+        if (name == null) {
+          name =
+              decode(
+                  sources[sourceIndexes[i]],
+                  nameStarts[i],
+                  nameEnds[i],
+                  (flags[i] & NAME_ENCODED) != 0);
+        }
+        nexts[i] = -1;
+        Chain chain = result.get(name);
+        if (chain == null) {
+          result.put(name, new Chain(i));
+        } else {
+          nexts[chain.last] = i;
+          chain.last = i;
+          chain.size++;
+        }
+      }
+      index = result;
+    }
+    return index;
+  }
+
+  private String value(int i) {
+    String value = values[i];
+    if (value == null) {
+      value =
+          decode(
+              sources[sourceIndexes[i]],
+              valueStarts[i],
+              valueEnds[i],
+              (flags[i] & VALUE_ENCODED) != 0);
+      values[i] = value;
+    }
+    return value;
+  }
+
+  /**
+   * 按当前字符编码解码一段字节，'+'解码为空格，%XX解码为一个字节
+   *
+   * @param bytes 字节数组
+   * @param start 起始位置
+   * @param end 结束位置（不包含）
+   * @param encoded 是否含有需要解码的字符，不含时直接创建字符串
+   * @return 解码后的字符串
+   */
+  private String decode(byte[] bytes, int start, int end, boolean encoded) {
+    if (start == end) {
+      return "";
+    }
+    if (!encoded) {
+      return new String(bytes, start, end - start, charset);
+    }
+    if (scratch == null || scratch.length < end - start) {
+      scratch = new byte[Math.max(64, end - start)];
+    }
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      byte b = bytes[i];
+      if (b == '+') {
+        b = ' ';
+      } else if (b == '%' && i + 2 < end) {
+        int high = Character.digit(bytes[i + 1], 16);
+        int low = Character.digit(bytes[i + 2], 16);
+        if (high >= 0 && low >= 0) {
+          b = (byte) ((high << 4) + low);
+          i += 2;
+        }
+      }
+      scratch[length++] = b;
+    }
+    return new String(scratch, 0, length, charset);
+  }
+
+  /** 同名参数链表的首尾下标和长度 */
+  private static final class Chain {
+
+    private final int first;
+
+    private int last;
+
+    private int size = 1;
+
+    private Chain(int first) {
+      this.first = first;
+      this.last = first;
+    }
+  }
+}
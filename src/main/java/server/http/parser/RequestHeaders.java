@@ -0,0 +1,223 @@
+package server.http.parser;
+
+import server.enums.HTTPHeaderEnum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一个请求的全部请求头。名字和值只记录在请求头字节数组中的偏移量，常见的请求头名字解析时就映射到{@link HTTPHeaderEnum}，
+ * 值的字符串在第一次被读取时才创建。实例属于{@link HttpRequestParser}，在同一个HttpProcess的请求之间复用。
+ *
+ * @author zhout
+ * @date 2020/7/4 11:00
+ */
+public class RequestHeaders {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** 请求头所在的字节数组 */
+  private byte[] bytes;
+
+  private int count;
+
+  private int[] nameStarts = new int[INITIAL_CAPACITY];
+
+  private int[] nameEnds = new int[INITIAL_CAPACITY];
+
+  private int[] valueStarts = new int[INITIAL_CAPACITY];
+
+  private int[] valueEnds = new int[INITIAL_CAPACITY];
+
+  /** 已知的请求头名字，不认识的名字为null */
+  private HTTPHeaderEnum[] known = new HTTPHeaderEnum[INITIAL_CAPACITY];
+
+  /** 已经创建的名字字符串（小写），只有不认识的名字需要 */
+  private String[] names = new String[INITIAL_CAPACITY];
+
+  /** 已经创建的值字符串 */
+  private String[] values = new String[INITIAL_CAPACITY];
+
+  /** 清空请求头，准备解析下一个请求 */
+  void recycle() {
+    Arrays.fill(names, 0, count, null);
+    Arrays.fill(values, 0, count, null);
+    count = 0;
+    bytes = null;
+  }
+
+  /**
+   * 记录一个请求头的位置，值的首尾空白已去掉
+   *
+   * @param nameStart 名字起始位置
+   * @param nameEnd 名字结束位置（不包含）
+   * @param valueStart 值起始位置
+   * @param valueEnd 值结束位置（不包含）
+   */
+  void add(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+    if (count == nameStarts.length) {
+      int capacity = count << 1;
+      nameStarts = Arrays.copyOf(nameStarts, capacity);
+      nameEnds = Arrays.copyOf(nameEnds, capacity);
+      valueStarts = Arrays.copyOf(valueStarts, capacity);
+      valueEnds = Arrays.copyOf(valueEnds, capacity);
+      known = Arrays.copyOf(known, capacity);
+      names = Arrays.copyOf(names, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    nameStarts[count] = nameStart;
+    nameEnds[count] = nameEnd;
+    valueStarts[count] = valueStart;
+    valueEnds[count] = valueEnd;
+    count++;
+  }
+
+  /**
+   * 请求头解析完毕，设置偏移量对应的字节数组并识别已知的请求头名字
+   *
+   * @param bytes 请求头字节数组
+   */
+  void setBytes(byte[] bytes) {
+    this.bytes = bytes;
+    for (int i = 0; i < count; i++) {
+      known[i] = HTTPHeaderEnum.lookup(bytes, nameStarts[i], nameEnds[i]);
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /**
+   * 获取第index个请求头的名字
+   *
+   * @param index 请求头序号
+   * @return 小写的名字
+   */
+  public String getName(int index) {
+    HTTPHeaderEnum header = known[index];
+    if (header != null) {
+      return header.getDesc();
+    }
+    String name = names[index];
+    if (name == null) {
+      name = toString(nameStarts[index], nameEnds[index]).toLowerCase();
+      names[index] = name;
+    }
+    return name;
+  }
+
+  /**
+   * 获取第index个请求头的值
+   *
+   * @param index 请求头序号
+   * @return 值
+   */
+  public String getValue(int index) {
+    String value = values[index];
+    if (value == null) {
+      value = toString(valueStarts[index], valueEnds[index]);
+      values[index] = value;
+    }
+    return value;
+  }
+
+  /**
+   * 获取已知请求头的第一个值
+   *
+   * @param header 请求头
+   * @return 值，不存在时返回null
+   */
+  public String getHeader(HTTPHeaderEnum header) {
+    for (int i = 0; i < count; i++) {
+      if (known[i] == header) {
+        return getValue(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 获取请求头的第一个值
+   *
+   * @param name 请求头名字，忽略大小写
+   * @return 值，不存在时返回null
+   */
+  public String getHeader(String name) {
+    int index = indexOf(name, 0);
+    return index < 0 ? null : getValue(index);
+  }
+
+  /**
+   * 获取请求头的所有值
+   *
+   * @param name 请求头名字，忽略大小写
+   * @return 值列表
+   */
+  public List<String> getHeaders(String name) {
+    int index = indexOf(name, 0);
+    if (index < 0) {
+      return Collections.emptyList();
+    }
+    List<String> list = new ArrayList<>(2);
+    while (index >= 0) {
+      list.add(getValue(index));
+      index = indexOf(name, index + 1);
+    }
+    return list;
+  }
+
+  /** 所有请求头的名字（小写、去重，保持请求中的顺序） */
+  public Set<String> getNames() {
+    Set<String> set = new LinkedHashSet<>();
+    for (int i = 0; i < count; i++) {
+      set.add(getName(i));
+    }
+    return set;
+  }
+
+  /**
+   * 从from开始查找名字匹配的请求头
+   *
+   * @param name 请求头名字，忽略大小写
+   * @param from 起始序号
+   * @return 请求头序号，找不到时返回-1
+   */
+  private int indexOf(String name, int from) {
+    if (name == null) {
+      return -1;
+    }
+    for (int i = from; i < count; i++) {
+      HTTPHeaderEnum header = known[i];
+      if (header != null ? header.getDesc().equalsIgnoreCase(name) : nameEquals(i, name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean nameEquals(int index, String name) {
+    int start = nameStarts[index];
+    int length = nameEnds[index] - start;
+    if (length != name.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = (char) (bytes[start + i] & 0xFF);
+      char other = name.charAt(i);
+      if (c != other && Character.toLowerCase(c) != Character.toLowerCase(other)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String toString(int start, int end) {
+    return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+  }
+}
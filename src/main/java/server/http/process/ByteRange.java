@@ -0,0 +1,115 @@
+package server.http.process;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Range请求头中的一个字节区间，起止位置都包含在内
+ *
+ * @author zhout
+ * @date 2020/7/15 10:10
+ */
+public class ByteRange {
+
+  /** 一个请求最多接受的区间数，超过时忽略Range返回完整内容 */
+  private static final int MAX_RANGES = 16;
+
+  private static final String BYTES_UNIT = "bytes=";
+
+  private final long start;
+
+  private final long end;
+
+  private ByteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * 解析Range请求头，支持 bytes=0-99、bytes=100- 和 bytes=-100 以及逗号分隔的多个区间
+   *
+   * @param header Range请求头
+   * @param length 完整内容的长度
+   * @return 可以满足的区间；格式错误或区间过多时返回null（按规范忽略Range），所有区间都无法满足时返回空列表
+   */
+  public static List<ByteRange> parse(String header, long length) {
+    header = header.trim();
+    if (!header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+      return null;
+    }
+    String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+    List<ByteRange> ranges = new ArrayList<>(specs.length);
+    for (String spec : specs) {
+      int dash = spec.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+      String first = spec.substring(0, dash).trim();
+      String last = spec.substring(dash + 1).trim();
+      long start;
+      long end;
+      try {
+        if (first.isEmpty()) {
+          // 后缀区间，表示最后若干个字节
+          long suffix = Long.parseLong(last);
+          if (suffix < 0) {
+            return null;
+          }
+          start = Math.max(0, length - suffix);
+          end = suffix == 0 ? -1 : length - 1;
+        } else {
+          start = Long.parseLong(first);
+          if (start < 0) {
+            return null;
+          }
+          if (last.isEmpty()) {
+            end = length - 1;
+          } else {
+            end = Long.parseLong(last);
+            // 结束位置小于起始位置是语法错误，忽略整个Range
+            if (end < start) {
+              return null;
+            }
+            end = Math.min(end, length - 1);
+          }
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if (start < length && start <= end) {
+        ranges.add(new ByteRange(start, end));
+      }
+    }
+    return ranges;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * 区间包含的字节数
+   *
+   * @return 字节数
+   */
+  public long getLength() {
+    return end - start + 1;
+  }
+
+  /**
+   * Content-Range响应头的值
+   *
+   * @param total 完整内容的长度
+   * @return 例如 bytes 0-99/1000
+   */
+  public String toContentRange(long total) {
+    return "bytes " + start + "-" + end + "/" + total;
+  }
+}
@@ -2,99 +2,211 @@ package server.http.process;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import server.connector.HttpConnector;
-import server.constant.HttpConstant;
+import server.connector.AbstractConnector;
+import server.constant.HttpVersionConstant;
+import server.context.WebContext;
 import server.enums.HTTPHeaderEnum;
+import server.enums.HttpStatusEnum;
 import server.http.carrier.HttpRequest;
 import server.http.carrier.HttpResponse;
+import server.http.parser.HttpRequestParser;
+import server.http.stream.ChannelOutputStream;
+import server.http.stream.InputBuffer;
+import server.http.stream.StreamInputBuffer;
+import server.session.SessionManager;
 import server.util.RequestUtil;
 import server.util.StringUtil;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.util.LinkedList;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toCollection;
-
 /**
  * @author zhout
  * @date 2020/6/11 15:48
  */
 public class HttpProcess {
 
-  private HttpRequest request;
-  private HttpResponse response;
-  private HttpConnector httpConnector;
+  /** 请求和响应对象，在这个HttpProcess处理的请求之间回收复用 */
+  private final HttpRequest request;
+
+  private final HttpResponse response;
+
+  private AbstractConnector connector;
+
+  /** 请求行和请求头解析器，多个请求之间复用 */
+  private final HttpRequestParser parser = new HttpRequestParser();
 
-  /** Servlet资源请求起始字符串 */
-  private static final String SERVLET_URI_START_WITH = "/servlet/";
+  /** 阻塞连接的输入缓冲区，处理新连接时重新绑定 */
+  private final StreamInputBuffer socketInput = new StreamInputBuffer(BUFFER_SIZE);
+
+  /** 响应缓冲区，多个请求之间复用 */
+  private final byte[] responseBuffer;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HttpProcess.class);
 
+  /** 阻塞连接输入流的缓冲区大小 */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** 请求处理完后最多替servlet丢弃的请求体字节数，剩余更多时直接关闭连接 */
+  private static final int MAX_SWALLOW_SIZE = 2 * 1024 * 1024;
+
   /**
    * 构造方法
    *
-   * @param httpConnector http连接器
+   * @param connector 所属的连接器
    */
-  public HttpProcess(HttpConnector httpConnector) {
-    this.httpConnector = httpConnector;
+  public HttpProcess(AbstractConnector connector) {
+    this.connector = connector;
+    this.responseBuffer = new byte[connector.getResponseBufferSize()];
+    this.request = new HttpRequest(connector.isDiscardFacades());
+    this.response = new HttpResponse(request, responseBuffer, connector.isDiscardFacades());
+    request.setResponse(response);
   }
 
+  /**
+   * 处理阻塞Socket上的请求。HTTP/1.1长连接会在同一个Socket上循环处理多个请求， 请求之间用keepAliveTimeout作为读超时等待下一个请求，
+   * 已经在缓冲区中的流水线请求直接处理。处理完毕后关闭Socket的输入输出流
+   *
+   * @param socket 客户端连接
+   * @throws IOException 读写出错
+   */
   public void process(Socket socket) throws IOException {
+    socketInput.bind(socket.getInputStream());
+    try (OutputStream output = openOutputStream(socket)) {
+      int maxRequests = connector.getMaxKeepAliveRequests();
+      int served = 0;
+      while (process(socketInput, output, maxRequests < 0 || ++served < maxRequests)) {
+        if (!awaitNextRequest(socket)) {
+          break;
+        }
+      }
+    } finally {
+      socketInput.bind(null);
+    }
+  }
 
-    try (InputStream input = socket.getInputStream();
-        OutputStream output = socket.getOutputStream()) {
-      // 初始化request以及response
-      request = new HttpRequest(input);
-      response = new HttpResponse(output, request);
+  /**
+   * 连接来自ServerSocketChannel时直接写通道，静态文件可以零拷贝发送
+   *
+   * @param socket 客户端连接
+   * @return 连接输出流
+   * @throws IOException 获取输出流出错
+   */
+  private OutputStream openOutputStream(Socket socket) throws IOException {
+    SocketChannel channel = socket.getChannel();
+    return channel != null ? new ChannelOutputStream(channel) : socket.getOutputStream();
+  }
 
-      // 解析request请求和请求头
-      this.parseRequest(input);
-      this.parseHeaders(input);
+  /**
+   * 从输入流解析一个请求并把响应写到输出流，流的关闭由调用方负责
+   *
+   * @param input 连接输入缓冲区，需要在多个请求之间复用，以免丢失已读入的流水线请求
+   * @param output 连接输出流
+   * @param keepAliveAllowed 处理完本次请求后是否还允许保持连接
+   * @return 连接是否可以继续处理下一个请求
+   * @throws IOException 读写出错
+   */
+  public boolean process(InputBuffer input, OutputStream output, boolean keepAliveAllowed)
+      throws IOException {
+    try {
+      // 绑定本次请求的输入输出流，request和response在上一个请求结束时已经回收
+      request.setInput(input);
+      response.setOutputStream(output);
+
+      // 解析request请求和请求头，连接上没有新请求时直接返回
+      if (!parser.parse(input, request)) {
+        return false;
+      }
+      this.parseRequest();
+      this.parseHeaders();
+      response.setKeepAlive(keepAliveAllowed && isKeepAlive());
 
       // 调用对应的处理器处理
-      if (request.getRequestURI().startsWith(SERVLET_URI_START_WITH)) {
-        new ServletProcess().process(request, response);
+      // 按最长的上下文路径找到所属的web应用
+      WebContext context = connector.getContextManager().map(request.getRequestURI());
+      if (context != null) {
+        context.process(request, response);
       } else {
-        new StaticResourceProcess().process(request, response);
+        response.setContentLengthLong(0);
+        response.sendHeaders(HttpStatusEnum.NOT_FOUND);
       }
+      output.flush();
+      // 请求体没有读完时下一个请求的位置无法确定，丢弃剩余部分或者关闭连接
+      return request.finishRequest(MAX_SWALLOW_SIZE) && response.isKeepAlive();
     } catch (ServletException e) {
       LOGGER.info("Catch ServletException from Socket process :", e);
+      if (!response.isCommitted()) {
+        // 请求格式错误，返回400后关闭连接，请求体和之后的数据无法可靠定位
+        response.reset();
+        response.setKeepAlive(false);
+        response.setContentLengthLong(0);
+        response.sendHeaders(HttpStatusEnum.BAD_REQUEST);
+        output.flush();
+      }
+      return false;
+    } finally {
+      // 清空本次请求的状态并删除上传的临时文件，Servlet保留的外观对象之后不能再访问
+      request.recycle();
+      response.recycle();
     }
   }
 
   /**
-   * 解析请求行和校验URI安全性
+   * 根据协议版本和Connection请求头判断客户端是否希望保持连接
    *
-   * @param input socket输入流
-   * @throws IOException 流错误
-   * @throws ServletException 读取到的请求行有误
+   * @return 是否保持连接
    */
-  private void parseRequest(InputStream input) throws IOException, ServletException {
-    StringBuilder temp = new StringBuilder();
-    int cache;
-    while ((cache = input.read()) != -1) {
-      // 请求行读取完毕
-      if (HttpConstant.CARRIAGE_RETURN == cache && HttpConstant.LINE_FEED == input.read()) {
-        break;
-      }
-      temp.append((char) cache);
+  private boolean isKeepAlive() {
+    String connection = request.getHeader(HTTPHeaderEnum.CONNECTION);
+    if (HttpVersionConstant.HTTP_1_1.equals(request.getProtocol())) {
+      return !"close".equalsIgnoreCase(connection);
+    }
+    // HTTP/1.0需要显式声明keep-alive
+    return "keep-alive".equalsIgnoreCase(connection);
+  }
+
+  /**
+   * 在长连接上等待下一个请求的第一个字节，等待期间使用keepAliveTimeout作为读超时
+   *
+   * @param socket 客户端连接
+   * @return 是否有新的请求到达
+   * @throws IOException 读取出错
+   */
+  private boolean awaitNextRequest(Socket socket) throws IOException {
+    if (socketInput.available() > 0) {
+      // 流水线请求已经在缓冲区中
+      return true;
     }
-    String[] requestLineArray = temp.toString().split(" ");
-    if (requestLineArray.length < 3) {
-      throw new ServletException("HTTP request line is not standard！");
+    socket.setSoTimeout(connector.getKeepAliveTimeout());
+    try {
+      return socketInput.fill() > 0;
+    } catch (SocketTimeoutException e) {
+      return false;
+    } finally {
+      if (!socket.isClosed()) {
+        socket.setSoTimeout(connector.getSoTimeout());
+      }
     }
-    // 填充request的URI和方法信息
-    request.setMethod(requestLineArray[0]);
-    request.setProtocol(requestLineArray[2]);
-    String uri = requestLineArray[1];
+  }
+
+  /**
+   * 处理解析器读到的请求URI：拆分查询字符串、去掉协议和主机部分、提取URL携带的jsessionid并校验URI安全性
+   *
+   * @throws ServletException URI不合法
+   */
+  private void parseRequest() throws ServletException {
+    String uri = request.getRequestURI();
     int question = uri.indexOf("?");
     if (question >= 0) {
       request.setQueryString(uri.substring(question + 1));
@@ -148,51 +260,38 @@ public class HttpProcess {
   /**
    * 解析HTTP请求头
    *
-   * @param input socket输入流
-   * @throws IOException 读取出错
+   * @throws IOException 字符编码不支持
+   * @throws ServletException 请求头有误
    */
-  private void parseHeaders(InputStream input) throws IOException {
-    StringBuilder sb = new StringBuilder();
-    int cache;
-    while (input.available() > 0 && (cache = input.read()) > -1) {
-      sb.append((char) cache);
-    }
-    // 使用\r\n分割请求头
-    Queue<String> headers =
-        Stream.of(sb.toString().split("\r\n")).collect(toCollection(LinkedList::new));
-    // 获取一个请求头
-    while (!headers.isEmpty()) {
-      String headerString = headers.poll();
-      // 读取到空行则说明请求头已读取完毕
-      if (StringUtil.isBlank(headerString)) {
-        break;
+  private void parseHeaders() throws IOException, ServletException {
+    // 请求体按chunked或Content-Length分帧，由RequestStream按需读取
+    String contentLength = request.getHeader(HTTPHeaderEnum.CONTENT_LENGTH);
+    String transferEncoding = request.getHeader(HTTPHeaderEnum.TRANSFER_ENCODING);
+    if (transferEncoding != null) {
+      // 两者同时出现或者HTTP/1.0携带Transfer-Encoding都可能导致请求走私，直接拒绝
+      if (contentLength != null
+          || !HttpVersionConstant.HTTP_1_1.equals(request.getProtocol())
+          || !"chunked".equalsIgnoreCase(transferEncoding)
+          || Collections.list(request.getHeaders(HTTPHeaderEnum.TRANSFER_ENCODING.getDesc())).size()
+              > 1) {
+        throw new ServletException("Unsupported Transfer-Encoding: " + transferEncoding);
       }
-      // 分割请求头的key和value
-      String[] headerKeyValue = headerString.split(": ");
-      request.addHeader(headerKeyValue[0], headerKeyValue[1]);
-    }
-
-    // 如果在读取到空行后还有数据，说明是POST请求的表单参数
-    if (!headers.isEmpty()) {
-      request.setPostParams(headers.poll());
+      request.setChunked(true);
+    } else if (contentLength != null) {
+      request.setContentLength(parseContentLength(contentLength));
     }
 
     // 设置请求参数
-    String contentLength = request.getHeader(HTTPHeaderEnum.CONTENT_LENGTH.getDesc());
-    if (contentLength != null) {
-      request.setContentLength(Integer.parseInt(contentLength));
-    }
-    request.setContentType(request.getHeader(HTTPHeaderEnum.CONTENT_TYPE.getDesc()));
-    request.setCharacterEncoding(
-        RequestUtil.parseCharacterEncoding(request.getHeader(request.getContentType())));
+    request.setContentType(request.getHeader(HTTPHeaderEnum.CONTENT_TYPE));
+    request.setCharacterEncoding(RequestUtil.parseCharacterEncoding(request.getContentType()));
 
-    Cookie[] cookies = parseCookieHeader(request.getHeader(HTTPHeaderEnum.COOKIE.getDesc()));
+    Cookie[] cookies = parseCookieHeader(request.getHeader(HTTPHeaderEnum.COOKIE));
     Optional.ofNullable(cookies)
         .ifPresent(cookie -> Stream.of(cookie).forEach(c -> request.addCookie(c)));
     // 如果sessionid不是从cookie中获取的，则优先使用cookie中的sessionid
     if (!request.isRequestedSessionIdFromCookie() && cookies != null) {
       Stream.of(cookies)
-          .filter(cookie -> "jsessionid".equals(cookie.getName()))
+          .filter(cookie -> SessionManager.COOKIE_NAME.equalsIgnoreCase(cookie.getName()))
           .findFirst()
           .ifPresent(
               cookie -> {
@@ -204,6 +303,32 @@ public class HttpProcess {
     }
   }
 
+  /**
+   * 解析Content-Length。多个不一致的值可能导致请求走私，直接拒绝
+   *
+   * @param value 请求头的值
+   * @return 请求体长度
+   * @throws ServletException 值不合法
+   */
+  private long parseContentLength(String value) throws ServletException {
+    long length;
+    try {
+      length = Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new ServletException("Invalid Content-Length: " + value);
+    }
+    if (length < 0) {
+      throw new ServletException("Invalid Content-Length: " + value);
+    }
+    Enumeration<String> values = request.getHeaders(HTTPHeaderEnum.CONTENT_LENGTH.getDesc());
+    while (values.hasMoreElements()) {
+      if (!value.equals(values.nextElement())) {
+        throw new ServletException("Conflicting Content-Length: " + value);
+      }
+    }
+    return length;
+  }
+
   /**
    * 将cookie字符串解析成cookie数组
    *
@@ -214,13 +339,21 @@ public class HttpProcess {
     if (StringUtil.isBlank(cookieListString)) {
       return null;
     }
-    return Stream.of(cookieListString.split("; "))
-        .map(
-            cookieStr -> {
-              String[] cookieArray = cookieStr.split("=");
-              return new Cookie(
-                  StringUtil.urlDecode(cookieArray[0]), StringUtil.urlDecode(cookieArray[1]));
-            })
-        .toArray(Cookie[]::new);
+    List<Cookie> cookies = new ArrayList<>();
+    for (String cookieStr : cookieListString.split(";")) {
+      int equals = cookieStr.indexOf('=');
+      if (equals <= 0) {
+        continue;
+      }
+      String name = StringUtil.urlDecode(cookieStr.substring(0, equals).trim());
+      String value = StringUtil.urlDecode(cookieStr.substring(equals + 1).trim());
+      try {
+        cookies.add(new Cookie(name, value));
+      } catch (IllegalArgumentException e) {
+        // 名字是保留字或者含有非法字符的Cookie忽略
+        LOGGER.debug("Ignore invalid cookie {}", name);
+      }
+    }
+    return cookies.toArray(new Cookie[0]);
   }
 }
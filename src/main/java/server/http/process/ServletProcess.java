@@ -2,20 +2,32 @@ package server.http.process;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import server.connector.HttpConnector;
+import server.config.ServerConfig;
 import server.enums.HttpStatusEnum;
 import server.http.carrier.HttpRequest;
 import server.http.carrier.HttpResponse;
-import server.http.carrier.facade.HttpRequestFacade;
-import server.http.carrier.facade.HttpResponseFacade;
+import server.servlet.MappingData;
+import server.servlet.ServletClassWatcher;
+import server.servlet.ServletMapper;
+import server.servlet.ServletRegistry;
+import server.servlet.ServletWrapper;
 
 import javax.servlet.Servlet;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Map;
 
 /**
+ * Servlet处理。Servlet实例由{@link ServletRegistry}缓存，只在第一次请求（或者启动预加载）时实例化和初始化，
+ * 连接器的所有工作线程共用同一个ServletProcess
+ *
+ * <p>请求URI按servlet.mapping.&lt;Servlet类名&gt;配置的URL模式映射到Servlet；没有匹配的映射时，
+ * 开启servlet.invoker的话/servlet/&lt;Servlet类名&gt;直接调用对应的Servlet，否则交给静态资源处理
+ *
+ * <p>开启servlet.reloadable时后台监视Servlet类目录，类文件变化后用新的类加载器重新部署，不需要重启服务器
+ *
  * @author zhout
  * @date 2020/6/10 15:47
  */
@@ -23,47 +35,178 @@ public class ServletProcess {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ServletProcess.class);
 
-  private static final URLClassLoader URL_CLASS_LOADER;
+  /** 按类名直接调用Servlet的URI前缀 */
+  private static final String INVOKER_PATH = "/servlet/";
 
-  static {
+  /** 找不到Servlet时用来返回404页面 */
+  private final StaticResourceProcess staticResourceProcess;
+
+  /** 重新部署时等待旧的Servlet处理完请求的最长时间（毫秒） */
+  private static final long DRAIN_TIMEOUT_MILLIS = 30000;
+
+  private final ServerConfig config;
+
+  /** Servlet类目录，即docBase下的servlet文件夹 */
+  private final File servletDirectory;
+
+  /** 当前这一代Servlet，重新部署时整体替换 */
+  private volatile ServletRegistry registry;
+
+  /** 监视Servlet类文件变化，没有开启重新部署时为null */
+  private final ServletClassWatcher watcher;
+
+  /** URI到Servlet的映射 */
+  private final ServletMapper mapper = new ServletMapper();
+
+  /** 是否允许通过/servlet/&lt;Servlet类名&gt;调用没有配置映射的Servlet */
+  private final boolean invoker;
+
+  /** 启动时需要加载的Servlet，逗号分隔 */
+  private final String loadOnStartup;
+
+  /**
+   * 构造方法
+   *
+   * @param config web应用的配置
+   * @param staticResourceProcess 同一个web应用的静态资源处理
+   * @param docBase web应用的根目录
+   */
+  public ServletProcess(
+      ServerConfig config, StaticResourceProcess staticResourceProcess, File docBase) {
+    this.staticResourceProcess = staticResourceProcess;
+    this.config = config;
+    /*定位到我们的webroot/servlet/文件夹*/
+    this.servletDirectory = new File(docBase, "servlet");
+    this.registry = new ServletRegistry(createClassLoader(), config);
+    this.loadOnStartup = config.getString("servlet.loadOnStartup", null);
+    this.invoker = config.getBoolean("servlet.invoker", true);
+    for (Map.Entry<String, String> entry : config.getByPrefix("servlet.mapping.").entrySet()) {
+      for (String pattern : entry.getValue().split(",")) {
+        if (!pattern.trim().isEmpty()) {
+          mapper.addMapping(pattern.trim(), entry.getKey());
+        }
+      }
+    }
+    this.watcher =
+        config.getBoolean("servlet.reloadable", false)
+            ? new ServletClassWatcher(
+                servletDirectory.toPath(),
+                this::redeploy,
+                config.getInt("servlet.reloadQuietMillis", 500))
+            : null;
+  }
+
+  private ClassLoader createClassLoader() {
     try {
-      /*定位到我们的webroot/servlet/文件夹*/
-      URL servletClassPath = new File(HttpConnector.WEB_PROJECT_ROOT, "servlet").toURI().toURL();
+      URL servletClassPath = servletDirectory.toURI().toURL();
       // 初始化classloader
-      URL_CLASS_LOADER = new URLClassLoader(new URL[] {servletClassPath});
+      return new URLClassLoader(new URL[] {servletClassPath});
     } catch (Exception e) {
       LOGGER.warn("initialized servlet classloader is fail!", e);
       throw new RuntimeException(e);
     }
   }
 
+  /** 初始化servlet.loadOnStartup中配置的Servlet，开启重新部署时开始监视类文件 */
+  public void start() {
+    registry.loadOnStartup(loadOnStartup);
+    if (watcher != null) {
+      watcher.start();
+    }
+  }
+
+  /** 停止监视并销毁所有Servlet，需要在连接器停止之后调用 */
+  public void destroy() {
+    if (watcher != null) {
+      watcher.stop();
+    }
+    registry.destroy();
+  }
+
+  /**
+   * 用新的类加载器重新部署全部Servlet。新的一代预加载完成后原子替换当前这一代，之后的请求都使用新的Servlet；
+   * 旧的一代等正在处理的请求结束后再销毁，在监视线程中执行
+   */
+  private synchronized void redeploy() {
+    long start = System.currentTimeMillis();
+    ServletRegistry fresh = new ServletRegistry(createClassLoader(), config);
+    fresh.loadOnStartup(loadOnStartup);
+    ServletRegistry old = registry;
+    registry = fresh;
+    old.retire(DRAIN_TIMEOUT_MILLIS);
+    LOGGER.info("Servlets are redeployed in {} ms", System.currentTimeMillis() - start);
+  }
+
+  /** 当前这一代Servlet的类加载器 */
+  public ClassLoader getClassLoader() {
+    return registry.getClassLoader();
+  }
+
+  /** 登记到当前这一代Servlet，登记时恰好被替换的话改用新的一代 */
+  private ServletRegistry acquireRegistry() {
+    ServletRegistry current;
+    do {
+      current = registry;
+    } while (!current.acquire());
+    return current;
+  }
+
   /**
-   * 根据Request执行相应的Servlet
+   * 查找处理请求URI的Servlet
+   *
+   * @param uri 规范化之后的请求URI
+   * @return 映射结果，不由Servlet处理时返回null
+   */
+  public MappingData map(String uri) {
+    MappingData mapping = mapper.map(uri);
+    if (mapping == null && invoker && uri.startsWith(INVOKER_PATH)) {
+      // 根据请求的URI截取Servlet的名字
+      mapping = new MappingData(this.parseServletName(uri), uri, null);
+    }
+    return mapping;
+  }
+
+  /**
+   * 根据映射结果执行相应的Servlet
    *
    * @param request request对象
    * @param response response对象
+   * @param mapping {@link #map(String)}的结果
    */
-  public void process(HttpRequest request, HttpResponse response) throws IOException {
-    // 根据请求的URI截取Servlet的名字
-    String servletName = this.parseServletName(request.getRequestURI());
-    // 使用URLClassLoader加载这个Servlet
-    Class servletClass;
-    try {
-      servletClass = URL_CLASS_LOADER.loadClass(servletName);
-    } catch (ClassNotFoundException e) {
-      LOGGER.info("servlet {} not found!", servletName);
-      // 实例化失败则调用404页面
-      response.accessStaticResources();
-      return;
-    }
+  public void process(HttpRequest request, HttpResponse response, MappingData mapping)
+      throws IOException {
+    String servletName = mapping.getServletName();
+    request.setServletPath(mapping.getServletPath(), mapping.getPathInfo());
+    ServletRegistry current = acquireRegistry();
     try {
-      // 实例化这个Servlet
-      Servlet servlet = (Servlet) servletClass.newInstance();
-      response.getWriter().print(new String(response.responseToByte(HttpStatusEnum.OK)));
-      servlet.service(new HttpRequestFacade(request), new HttpResponseFacade(response));
-      response.finishResponse();
-    } catch (Exception e) {
-      LOGGER.info(String.format("Invoke Servlet %s is fail!", servletName), e);
+      ServletWrapper wrapper = current.getWrapper(servletName);
+      if (wrapper == null) {
+        // 找不到Servlet则调用404页面
+        staticResourceProcess.sendNotFound(request, response);
+        return;
+      }
+      if (wrapper.getMultipartConfig() != null) {
+        request.setMultipartConfig(wrapper.getMultipartConfig());
+      }
+      try {
+        Servlet servlet = wrapper.allocate();
+        // servlet的输出先进入响应缓冲区，缓冲区满或者主动flush时才提交响应头
+        servlet.service(request.getFacade(), response.getFacade());
+        response.finishResponse();
+      } catch (Exception e) {
+        LOGGER.info(String.format("Invoke Servlet %s is fail!", servletName), e);
+        if (response.isCommitted()) {
+          // 响应已经部分输出，不完整，只能关闭连接
+          response.setKeepAlive(false);
+        } else {
+          // 还没有输出任何内容，丢弃缓冲区改为返回500，连接照常保持
+          response.reset();
+          response.setContentLengthLong(0);
+          response.sendHeaders(HttpStatusEnum.INTERNAL_SERVER_ERROR);
+        }
+      }
+    } finally {
+      current.release();
     }
   }
 
@@ -2,12 +2,47 @@ package server.http.process;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import server.config.ServerConfig;
+import server.enums.ContentEncodingEnum;
+import server.enums.HTTPHeaderEnum;
+import server.enums.HttpStatusEnum;
+import server.http.cache.CacheControlPolicy;
+import server.http.cache.CachedResource;
+import server.http.cache.StaticResourceCache;
 import server.http.carrier.HttpRequest;
 import server.http.carrier.HttpResponse;
+import server.util.DateUtil;
+import server.util.MimeTypeUtil;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
+ * 静态资源处理。一个连接器共用一个实例，不保存请求相关的状态
+ *
+ * <p>不超过static.cacheMaxEntrySizeKB的文件放入{@link StaticResourceCache}，命中时不访问文件系统，
+ * 响应头和内容一次聚合写出。其余文件中不小于static.sendfileThreshold的用
+ * {@link FileChannel#transferTo}零拷贝发送，更小的文件数据量不大，系统调用的开销占比更高，直接读到堆内存中写出。
+ *
+ * <p>开启static.mmapEnabled后，不小于static.mmapThresholdKB的文件改为映射到内存，并发请求共用同一个映射，
+ * 映射总大小受static.mmapMaxSizeMB限制。
+ *
+ * <p>文本类型的资源按Accept-Encoding压缩：存在foo.js.gz这样预先压缩好的文件时直接使用， 否则压缩一次并把压缩结果放入缓存。
+ * 小于static.compressionMinSize的文件不压缩。
+ *
+ * <p>响应带有ETag和Last-Modified，Cache-Control按static.cacheControl中的路径规则生成。 GET/HEAD请求的If-None-Match或
+ * If-Modified-Since表明客户端缓存仍然有效时返回不带响应体的304。
+ *
+ * <p>未压缩的内容支持Range和If-Range，返回206和请求的区间，多个区间使用multipart/byteranges；文件只发送请求的区间。
+ *
  * @author zhout
  * @date 2020/6/10 15:46
  */
@@ -15,6 +50,92 @@ public class StaticResourceProcess {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StaticResourceProcess.class);
 
+  /** 304响应的空响应体 */
+  private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0);
+
+  /** multipart/byteranges的分隔符 */
+  private static final String MULTIPART_BOUNDARY = "SIMPLE_TOMCAT_MIME_BOUNDARY";
+
+  private static final byte[] MULTIPART_END =
+      ("--" + MULTIPART_BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+  private static final byte[] CRLF = {'\r', '\n'};
+
+  /** 找不到资源时返回的页面 */
+  private static final String NOT_FOUND_PAGE = "/404.html";
+
+  /** 使用零拷贝发送的最小文件大小（字节） */
+  private final long sendfileThreshold;
+
+  /** 静态资源缓存，关闭缓存时为null */
+  private final StaticResourceCache cache;
+
+  /** 使用文件映射的最小文件大小（字节） */
+  private final long mmapThreshold;
+
+  /** 大文件的映射缓存，关闭映射时为null */
+  private final StaticResourceCache mappedCache;
+
+  /** 是否压缩响应 */
+  private final boolean compression;
+
+  /** 压缩的最小文件大小（字节） */
+  private final long compressionMinSize;
+
+  /** 动态压缩的最大文件大小（字节），压缩时需要把整个文件读入内存 */
+  private final long compressionMaxSize;
+
+  /** 需要压缩的Content-Type */
+  private final Set<String> compressibleMimeTypes;
+
+  /** 按路径生成Cache-Control */
+  private final CacheControlPolicy cacheControlPolicy;
+
+  /** 默认压缩的Content-Type */
+  private static final String DEFAULT_COMPRESSIBLE_MIME_TYPES =
+      "text/html,text/css,text/plain,text/csv,application/javascript,application/json,"
+          + "application/xml,image/svg+xml";
+
+  /** web应用的根目录 */
+  private final String docBase;
+
+  /**
+   * 构造方法
+   *
+   * @param config web应用的配置
+   * @param docBase web应用的根目录
+   */
+  public StaticResourceProcess(ServerConfig config, File docBase) {
+    this.docBase = docBase.getPath();
+    this.sendfileThreshold = config.getInt("static.sendfileThreshold", 48 * 1024);
+    long cacheMaxEntrySize = config.getInt("static.cacheMaxEntrySizeKB", 512) * 1024L;
+    this.cache =
+        config.getBoolean("static.cacheEnabled", true)
+            ? new StaticResourceCache(
+                config.getInt("static.cacheMaxSizeKB", 10240) * 1024L,
+                cacheMaxEntrySize,
+                config.getInt("static.cacheRevalidateInterval", 5000))
+            : null;
+    this.mmapThreshold = config.getInt("static.mmapThresholdKB", 1024) * 1024L;
+    this.mappedCache =
+        config.getBoolean("static.mmapEnabled", false)
+            ? new StaticResourceCache(
+                config.getInt("static.mmapMaxSizeMB", 256) * 1024L * 1024L,
+                Integer.MAX_VALUE,
+                config.getInt("static.cacheRevalidateInterval", 5000))
+            : null;
+    this.compression = config.getBoolean("static.compression", true);
+    this.compressionMinSize = config.getInt("static.compressionMinSize", 1024);
+    this.compressionMaxSize = cache != null ? cacheMaxEntrySize : 0;
+    this.compressibleMimeTypes =
+        new HashSet<>(
+            Arrays.asList(
+                config
+                    .getString("static.compressibleMimeTypes", DEFAULT_COMPRESSIBLE_MIME_TYPES)
+                    .split("\\s*,\\s*")));
+    this.cacheControlPolicy = new CacheControlPolicy(config.getString("static.cacheControl", null));
+  }
+
   /**
    * 执行静态资源处理
    *
@@ -24,6 +145,547 @@ public class StaticResourceProcess {
    */
   public void process(HttpRequest httpRequest, HttpResponse httpResponse) throws IOException {
     LOGGER.debug("Start Process static resource...");
-    httpResponse.accessStaticResources();
+    String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+    if (!send(path.isEmpty() ? "/" : path, HttpStatusEnum.OK, httpRequest, httpResponse)) {
+      sendNotFound(httpRequest, httpResponse);
+    }
+  }
+
+  /**
+   * 返回404页面
+   *
+   * @param httpRequest request
+   * @param httpResponse response
+   * @throws IOException IO异常
+   */
+  public void sendNotFound(HttpRequest httpRequest, HttpResponse httpResponse)
+      throws IOException {
+    if (!send(NOT_FOUND_PAGE, HttpStatusEnum.NOT_FOUND, httpRequest, httpResponse)) {
+      httpResponse.setContentLengthLong(0);
+      httpResponse.sendHeaders(HttpStatusEnum.NOT_FOUND);
+    }
+  }
+
+  /**
+   * 输出URI对应的资源，优先使用缓存
+   *
+   * @param uri 规范化之后、相对于web应用的请求URI
+   * @param status 响应状态
+   * @param httpRequest request
+   * @param httpResponse response
+   * @return 资源是否存在
+   * @throws IOException IO异常
+   */
+  private boolean send(
+      String uri, HttpStatusEnum status, HttpRequest httpRequest, HttpResponse httpResponse)
+      throws IOException {
+    String contentType = MimeTypeUtil.getMimeType(uri);
+    boolean compressible = compression && compressibleMimeTypes.contains(contentType);
+    ContentEncodingEnum encoding =
+        compressible
+            ? selectEncoding(httpRequest.getHeader(HTTPHeaderEnum.ACCEPT_ENCODING))
+            : null;
+    String cacheControl = cacheControlPolicy.lookup(uri);
+    CachedResource resource = lookup(uri, encoding);
+    if (resource == null) {
+      // 根据请求URI找到用户对应请求的资源文件
+      File staticResource = new File(docBase + uri);
+      if (!staticResource.isFile()) {
+        return false;
+      }
+      if (encoding != null) {
+        resource =
+            loadEncoded(
+                uri,
+                staticResource,
+                contentType,
+                encoding,
+                cacheControl,
+                status,
+                httpRequest,
+                httpResponse);
+        if (resource == null && httpResponse.isCommitted()) {
+          return true;
+        }
+      }
+      if (resource == null) {
+        resource = load(uri, staticResource, contentType, compressible, cacheControl);
+      }
+      if (resource == null) {
+        sendFile(
+            staticResource,
+            contentType,
+            null,
+            compressible,
+            cacheControl,
+            status,
+            httpRequest,
+            httpResponse);
+        return true;
+      }
+    }
+    try {
+      sendResource(resource, status, httpRequest, httpResponse);
+    } finally {
+      resource.release();
+    }
+    return true;
+  }
+
+  /**
+   * 输出缓存的资源，按请求头返回304或206
+   *
+   * @param resource 缓存的资源
+   * @param status 响应状态
+   * @param httpRequest request
+   * @param httpResponse response
+   * @throws IOException IO异常
+   */
+  private void sendResource(
+      CachedResource resource,
+      HttpStatusEnum status,
+      HttpRequest httpRequest,
+      HttpResponse httpResponse)
+      throws IOException {
+    if (status == HttpStatusEnum.OK
+        && isNotModified(httpRequest, resource.getEtag(), resource.getLastModified())) {
+      httpResponse.sendPrepared(
+          HttpStatusEnum.NOT_MODIFIED, resource.notModifiedHeaders(), EMPTY_BODY.duplicate());
+      return;
+    }
+    List<ByteRange> ranges =
+        status == HttpStatusEnum.OK && resource.getEncoding() == null
+            ? parseRanges(
+                httpRequest, resource.getEtag(), resource.getLastModified(), resource.getLength())
+            : null;
+    if (ranges != null) {
+      sendRanges(
+          ranges,
+          resource.getLength(),
+          resource.getContentType(),
+          resource.getValidators(),
+          (response, position, count) -> {
+            ByteBuffer slice = resource.content();
+            slice.position((int) position).limit((int) (position + count));
+            response.write(slice);
+          },
+          httpResponse);
+      return;
+    }
+    httpResponse.setContentLengthLong(resource.getLength());
+    httpResponse.sendPrepared(status, resource.headers(), resource.content());
+  }
+
+  /**
+   * 只查缓存，不访问文件系统
+   *
+   * @param uri 规范化之后的请求URI
+   * @param encoding 客户端接受的压缩算法，不压缩时为null
+   * @return 已持有引用的资源，没有命中时返回null
+   */
+  private CachedResource lookup(String uri, ContentEncodingEnum encoding) {
+    if (cache != null && encoding != null) {
+      CachedResource resource = cache.get(encodedKey(uri, encoding));
+      if (resource != null) {
+        return resource;
+      }
+      // 太小不值得压缩的文件直接使用未压缩的缓存
+      resource = cache.get(uri);
+      if (resource != null && resource.getLength() < compressionMinSize) {
+        return resource;
+      }
+      if (resource != null) {
+        resource.release();
+      }
+      return null;
+    }
+    CachedResource resource = cache != null ? cache.get(uri) : null;
+    if (resource == null && mappedCache != null) {
+      resource = mappedCache.get(uri);
+    }
+    return resource;
+  }
+
+  /**
+   * 加载压缩版本：优先使用预先压缩好的文件，否则动态压缩并放入缓存
+   *
+   * @param uri 规范化之后的请求URI
+   * @param file 未压缩的资源文件
+   * @param contentType 响应的Content-Type
+   * @param encoding 压缩算法
+   * @param cacheControl Cache-Control的值，null表示不输出
+   * @param status 响应状态
+   * @param httpRequest request
+   * @param httpResponse response
+   * @return 已持有引用的资源；预先压缩的文件太大不能缓存时直接发送并返回null， 文件不适合压缩时也返回null
+   * @throws IOException IO异常
+   */
+  private CachedResource loadEncoded(
+      String uri,
+      File file,
+      String contentType,
+      ContentEncodingEnum encoding,
+      String cacheControl,
+      HttpStatusEnum status,
+      HttpRequest httpRequest,
+      HttpResponse httpResponse)
+      throws IOException {
+    String key = encodedKey(uri, encoding);
+    if (encoding.getSuffix() != null) {
+      File precompressed = new File(file.getPath() + encoding.getSuffix());
+      if (precompressed.isFile()) {
+        if (cache != null && cache.isCacheable(precompressed.length())) {
+          return cache.put(
+              key, CachedResource.load(precompressed, contentType, encoding, true, cacheControl));
+        }
+        sendFile(
+            precompressed,
+            contentType,
+            encoding,
+            true,
+            cacheControl,
+            status,
+            httpRequest,
+            httpResponse);
+        return null;
+      }
+    }
+    long length = file.length();
+    if (length < compressionMinSize || length > compressionMaxSize) {
+      return null;
+    }
+    return cache.put(key, CachedResource.compress(file, contentType, encoding, cacheControl));
+  }
+
+  /**
+   * 按文件大小放入映射缓存或内存缓存
+   *
+   * @param uri 规范化之后的请求URI
+   * @param file 资源文件
+   * @param contentType 响应的Content-Type
+   * @param vary 是否输出Vary: Accept-Encoding
+   * @param cacheControl Cache-Control的值，null表示不输出
+   * @return 已持有引用的资源，文件不适合缓存时返回null
+   * @throws IOException 读取出错
+   */
+  private CachedResource load(
+      String uri, File file, String contentType, boolean vary, String cacheControl)
+      throws IOException {
+    long length = file.length();
+    if (mappedCache != null && length >= mmapThreshold && mappedCache.isCacheable(length)) {
+      return mappedCache.put(uri, CachedResource.map(file, contentType, vary, cacheControl));
+    }
+    if (cache != null && cache.isCacheable(length)) {
+      return cache.put(uri, CachedResource.load(file, contentType, null, vary, cacheControl));
+    }
+    return null;
+  }
+
+  /**
+   * 输出响应头和文件内容。Content-Length取自打开后的文件通道，保证和实际发送的字节数一致
+   *
+   * @param file 资源文件
+   * @param contentType 响应的Content-Type
+   * @param encoding 文件内容的编码，未压缩时为null
+   * @param vary 是否输出Vary: Accept-Encoding
+   * @param cacheControl Cache-Control的值，null表示不输出
+   * @param status 响应状态
+   * @param httpRequest request
+   * @param httpResponse response
+   * @throws IOException IO异常
+   */
+  private void sendFile(
+      File file,
+      String contentType,
+      ContentEncodingEnum encoding,
+      boolean vary,
+      String cacheControl,
+      HttpStatusEnum status,
+      HttpRequest httpRequest,
+      HttpResponse httpResponse)
+      throws IOException {
+    long lastModified = file.lastModified();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long length = channel.size();
+      String etag = CachedResource.etag(length, lastModified, encoding);
+      String validators =
+          CachedResource.validatorHeaders(etag, lastModified, vary, cacheControl);
+      if (status == HttpStatusEnum.OK && isNotModified(httpRequest, etag, lastModified)) {
+        httpResponse.sendPrepared(
+            HttpStatusEnum.NOT_MODIFIED,
+            ByteBuffer.wrap(validators.getBytes(StandardCharsets.ISO_8859_1)),
+            EMPTY_BODY.duplicate());
+        return;
+      }
+      List<ByteRange> ranges =
+          status == HttpStatusEnum.OK && encoding == null
+              ? parseRanges(httpRequest, etag, lastModified, length)
+              : null;
+      if (ranges != null) {
+        sendRanges(
+            ranges,
+            length,
+            contentType,
+            validators,
+            (response, position, count) -> sendFileRegion(response, channel, position, count),
+            httpResponse);
+        return;
+      }
+      httpResponse.setContentType(contentType);
+      httpResponse.setContentLengthLong(length);
+      if (encoding != null) {
+        httpResponse.setHeader("Content-Encoding", encoding.getDesc());
+      } else {
+        httpResponse.setHeader("Accept-Ranges", "bytes");
+      }
+      if (vary) {
+        httpResponse.setHeader("Vary", "Accept-Encoding");
+      }
+      httpResponse.setHeader("ETag", etag);
+      httpResponse.setHeader("Last-Modified", DateUtil.formatHttpDate(lastModified));
+      if (cacheControl != null) {
+        httpResponse.setHeader("Cache-Control", cacheControl);
+      }
+      httpResponse.sendHeaders(status);
+      sendFileRegion(httpResponse, channel, 0, length);
+    }
+  }
+
+  /**
+   * 输出文件的一个区间，较大的区间零拷贝发送
+   *
+   * @param httpResponse response
+   * @param channel 文件通道
+   * @param position 起始位置
+   * @param count 字节数
+   * @throws IOException IO异常
+   */
+  private void sendFileRegion(
+      HttpResponse httpResponse, FileChannel channel, long position, long count)
+      throws IOException {
+    if (count >= sendfileThreshold) {
+      httpResponse.transferFile(channel, position, count);
+    } else {
+      httpResponse.writeFile(channel, position, count);
+    }
+  }
+
+  /**
+   * 解析GET请求的Range，If-Range和当前的ETag或最后修改时间不一致时忽略Range
+   *
+   * @param httpRequest request
+   * @param etag 当前的ETag
+   * @param lastModified 当前的最后修改时间
+   * @param length 完整内容的长度
+   * @return 请求的区间，不需要返回部分内容时返回null
+   */
+  private static List<ByteRange> parseRanges(
+      HttpRequest httpRequest, String etag, long lastModified, long length) {
+    String range = httpRequest.getHeader(HTTPHeaderEnum.RANGE);
+    if (range == null || !"GET".equals(httpRequest.getMethod())) {
+      return null;
+    }
+    String ifRange = httpRequest.getHeader(HTTPHeaderEnum.IF_RANGE);
+    if (ifRange != null) {
+      ifRange = ifRange.trim();
+      if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+        // If-Range只能用强比较（RFC 7233 3.2），任何一方是弱ETag都视为不匹配，返回完整内容
+        if (isWeak(ifRange) || isWeak(etag) || !ifRange.equals(etag)) {
+          return null;
+        }
+      } else if (DateUtil.parseHttpDate(ifRange) / 1000 != lastModified / 1000) {
+        return null;
+      }
+    }
+    return ByteRange.parse(range, length);
+  }
+
+  /**
+   * 输出206响应，多个区间时使用multipart/byteranges；没有可以满足的区间时返回416
+   *
+   * @param ranges 请求的区间
+   * @param length 完整内容的长度
+   * @param contentType 完整内容的Content-Type
+   * @param validators 校验和缓存相关的响应头
+   * @param body 响应体的来源
+   * @param httpResponse response
+   * @throws IOException IO异常
+   */
+  private void sendRanges(
+      List<ByteRange> ranges,
+      long length,
+      String contentType,
+      String validators,
+      BodyWriter body,
+      HttpResponse httpResponse)
+      throws IOException {
+    StringBuilder header = new StringBuilder();
+    if (ranges.isEmpty()) {
+      header
+          .append("Content-Range: bytes */")
+          .append(length)
+          .append("\r\nContent-Length: 0\r\n");
+      httpResponse.sendPrepared(
+          HttpStatusEnum.RANGE_NOT_SATISFIABLE, toBuffer(header), EMPTY_BODY.duplicate());
+      return;
+    }
+    if (ranges.size() == 1) {
+      ByteRange range = ranges.get(0);
+      header
+          .append("Content-Type: ")
+          .append(contentType)
+          .append("\r\nContent-Length: ")
+          .append(range.getLength())
+          .append("\r\nContent-Range: ")
+          .append(range.toContentRange(length))
+          .append("\r\n")
+          .append(validators);
+      httpResponse.sendPrepared(
+          HttpStatusEnum.PARTIAL_CONTENT, toBuffer(header), EMPTY_BODY.duplicate());
+      body.write(httpResponse, range.getStart(), range.getLength());
+      return;
+    }
+    // 先生成每个部分的头，算出完整的Content-Length
+    byte[][] partHeaders = new byte[ranges.size()][];
+    long contentLength = MULTIPART_END.length;
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      partHeaders[i] =
+          ("--"
+                  + MULTIPART_BOUNDARY
+                  + "\r\nContent-Type: "
+                  + contentType
+                  + "\r\nContent-Range: "
+                  + range.toContentRange(length)
+                  + "\r\n\r\n")
+              .getBytes(StandardCharsets.ISO_8859_1);
+      contentLength += partHeaders[i].length + range.getLength() + CRLF.length;
+    }
+    header
+        .append("Content-Type: multipart/byteranges; boundary=")
+        .append(MULTIPART_BOUNDARY)
+        .append("\r\nContent-Length: ")
+        .append(contentLength)
+        .append("\r\n")
+        .append(validators);
+    httpResponse.sendPrepared(
+        HttpStatusEnum.PARTIAL_CONTENT, toBuffer(header), EMPTY_BODY.duplicate());
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      httpResponse.write(ByteBuffer.wrap(partHeaders[i]));
+      body.write(httpResponse, range.getStart(), range.getLength());
+      httpResponse.write(ByteBuffer.wrap(CRLF));
+    }
+    httpResponse.write(ByteBuffer.wrap(MULTIPART_END));
+  }
+
+  private static ByteBuffer toBuffer(CharSequence header) {
+    return ByteBuffer.wrap(header.toString().getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  /**
+   * 按RFC 7232判断GET/HEAD请求的客户端缓存是否仍然有效：有If-None-Match时只比较ETag（弱比较），否则比较If-Modified-Since
+   *
+   * @param httpRequest request
+   * @param etag 当前的ETag
+   * @param lastModified 当前的最后修改时间
+   * @return 是否可以返回304
+   */
+  private static boolean isNotModified(HttpRequest httpRequest, String etag, long lastModified) {
+    String method = httpRequest.getMethod();
+    if (!"GET".equals(method) && !"HEAD".equals(method)) {
+      return false;
+    }
+    String ifNoneMatch = httpRequest.getHeader(HTTPHeaderEnum.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      String opaque = stripWeak(etag);
+      for (String candidate : ifNoneMatch.split(",")) {
+        candidate = candidate.trim();
+        if ("*".equals(candidate) || stripWeak(candidate).equals(opaque)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    long since =
+        DateUtil.parseHttpDate(httpRequest.getHeader(HTTPHeaderEnum.IF_MODIFIED_SINCE));
+    // HTTP日期只精确到秒
+    return since >= 0 && lastModified / 1000 <= since / 1000;
+  }
+
+  private static boolean isWeak(String etag) {
+    return etag.startsWith("W/");
+  }
+
+  private static String stripWeak(String etag) {
+    return isWeak(etag) ? etag.substring(2) : etag;
+  }
+
+  /**
+   * 压缩版本在缓存中的key
+   *
+   * @param uri 规范化之后的请求URI
+   * @param encoding 压缩算法
+   * @return 缓存key
+   */
+  private static String encodedKey(String uri, ContentEncodingEnum encoding) {
+    return uri + ";" + encoding.getDesc();
+  }
+
+  /**
+   * 根据Accept-Encoding选择压缩算法，q=0表示不接受
+   *
+   * @param acceptEncoding Accept-Encoding请求头
+   * @return 优先级最高的可用算法，没有时返回null
+   */
+  private static ContentEncodingEnum selectEncoding(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    ContentEncodingEnum selected = null;
+    for (String token : acceptEncoding.split(",")) {
+      String[] parts = token.split(";");
+      // ";"、",,"之类的空项没有算法名，直接跳过
+      if (parts.length == 0 || parts[0].trim().isEmpty() || isRefused(parts)) {
+        continue;
+      }
+      String name = parts[0].trim();
+      for (ContentEncodingEnum encoding : ContentEncodingEnum.values()) {
+        if ((encoding.getDesc().equalsIgnoreCase(name) || "*".equals(name))
+            && (selected == null || encoding.ordinal() < selected.ordinal())) {
+          selected = encoding;
+        }
+      }
+    }
+    return selected;
+  }
+
+  private static boolean isRefused(String[] parts) {
+    for (int i = 1; i < parts.length; i++) {
+      String parameter = parts[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2)) <= 0;
+        } catch (NumberFormatException e) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** 响应体的来源，缓存内容或者文件 */
+  @FunctionalInterface
+  private interface BodyWriter {
+
+    /**
+     * 输出响应体的一个区间
+     *
+     * @param httpResponse response
+     * @param position 起始位置
+     * @param count 字节数
+     * @throws IOException IO异常
+     */
+    void write(HttpResponse httpResponse, long position, long count) throws IOException;
   }
 }
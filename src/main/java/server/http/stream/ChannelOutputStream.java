@@ -0,0 +1,106 @@
+package server.http.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 直接写SocketChannel的输出流。除了普通的字节写出，还支持把文件区间用{@link FileChannel#transferTo}
+ * 零拷贝地发送到连接（Linux上对应sendfile），文件内容不经过Java堆。
+ *
+ * <p>关闭流不会关闭连接，连接的生命周期由连接器管理。
+ *
+ * @author zhout
+ * @date 2020/7/9 14:10
+ */
+public class ChannelOutputStream extends OutputStream {
+
+  protected final SocketChannel channel;
+
+  public ChannelOutputStream(SocketChannel channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    write(ByteBuffer.wrap(b, off, len));
+  }
+
+  /**
+   * 把缓冲区中剩余的数据全部写出
+   *
+   * @param buffer 待写出数据
+   * @throws IOException 写出错或超时
+   */
+  public void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.write(buffer) == 0) {
+        awaitWritable();
+      }
+    }
+  }
+
+  /**
+   * 聚合写出多个缓冲区中剩余的数据，多段内容只需要一次系统调用
+   *
+   * @param buffers 待写出数据
+   * @throws IOException 写出错或超时
+   */
+  public void write(ByteBuffer[] buffers) throws IOException {
+    int offset = 0;
+    while (offset < buffers.length) {
+      if (!buffers[offset].hasRemaining()) {
+        offset++;
+        continue;
+      }
+      if (channel.write(buffers, offset, buffers.length - offset) == 0) {
+        awaitWritable();
+      }
+    }
+  }
+
+  /**
+   * 把文件的指定区间全部发送到连接
+   *
+   * @param file 文件通道
+   * @param position 起始位置
+   * @param count 发送的字节数
+   * @throws IOException 写出错、超时或文件在发送过程中被截短
+   */
+  public void transferFrom(FileChannel file, long position, long count) throws IOException {
+    while (count > 0) {
+      long transferred = file.transferTo(position, count, channel);
+      if (transferred == 0) {
+        if (position >= file.size()) {
+          throw new EOFException("File is truncated while transferring.");
+        }
+        awaitWritable();
+        continue;
+      }
+      position += transferred;
+      count -= transferred;
+    }
+  }
+
+  /**
+   * 发送缓冲区已满时等待通道可写。阻塞通道的写操作会一直等到有数据写出，不会走到这里
+   *
+   * @throws IOException 等待超时或出错
+   */
+  protected void awaitWritable() throws IOException {
+    // 阻塞通道不需要等待
+  }
+
+  @Override
+  public void close() {
+    // 连接由连接器关闭
+  }
+}
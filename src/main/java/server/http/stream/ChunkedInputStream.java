@@ -0,0 +1,192 @@
+package server.http.stream;
+
+import server.constant.HttpConstant;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Transfer-Encoding: chunked请求体的解码流。只返回各个chunk的数据部分，chunk扩展和结尾的trailer都会被丢弃，
+ * 读到大小为0的最后一个chunk及其后的空行后返回-1，连接上的下一个请求从正确的位置开始。
+ *
+ * <p>格式错误抛出{@link IOException}，连接在chunk中途被关闭抛出{@link EOFException}。
+ *
+ * @author zhout
+ * @date 2020/7/4 15:10
+ */
+public class ChunkedInputStream extends InputStream {
+
+  /** chunk大小一行（包括扩展）允许的最大长度 */
+  private static final int MAX_CHUNK_HEADER_SIZE = 1024;
+
+  /** trailer部分允许的最大长度 */
+  private static final int MAX_TRAILER_SIZE = 8192;
+
+  private final InputStream input;
+
+  /** 当前chunk中还没有读取的字节数 */
+  private long remaining;
+
+  /** 当前chunk的数据之后还有CRLF需要跳过 */
+  private boolean needCrlf;
+
+  /** 已经读到最后一个chunk */
+  private boolean eof;
+
+  private final byte[] single = new byte[1];
+
+  public ChunkedInputStream(InputStream input) {
+    this.input = input;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int read = read(single, 0, 1);
+    return read < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (remaining == 0 && !nextChunk()) {
+      return -1;
+    }
+    int read = input.read(b, off, (int) Math.min(len, remaining));
+    if (read < 0) {
+      throw new EOFException("Chunked request body is incomplete!");
+    }
+    remaining -= read;
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0 || (remaining == 0 && !nextChunk())) {
+      return 0;
+    }
+    long skipped = input.skip(Math.min(n, remaining));
+    if (skipped <= 0) {
+      // 底层流可能不支持skip，逐字节读取
+      if (read() < 0) {
+        return 0;
+      }
+      return 1;
+    }
+    remaining -= skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return eof ? 0 : (int) Math.min(remaining, input.available());
+  }
+
+  /** 是否已经读到最后一个chunk */
+  public boolean isFinished() {
+    return eof;
+  }
+
+  /**
+   * 读取下一个chunk的大小
+   *
+   * @return 是否还有数据，读到最后一个chunk时返回false
+   * @throws IOException 读取出错或格式错误
+   */
+  private boolean nextChunk() throws IOException {
+    if (eof) {
+      return false;
+    }
+    if (needCrlf) {
+      readLineEnd(nextByte());
+      needCrlf = false;
+    }
+    long size = 0;
+    int digits = 0;
+    int b = nextByte();
+    int value;
+    while ((value = Character.digit(b, 16)) >= 0) {
+      // 16个十六进制位会超过long的范围
+      if (++digits > 15) {
+        throw new IOException("Chunk size is too large!");
+      }
+      size = (size << 4) + value;
+      b = nextByte();
+    }
+    if (digits == 0) {
+      throw new IOException("Invalid chunk size!");
+    }
+    // 跳过chunk扩展，只允许以空白或';'开头
+    if (b != HttpConstant.CARRIAGE_RETURN && b != HttpConstant.LINE_FEED) {
+      if (b != ';' && b != HttpConstant.SPACE && b != HttpConstant.HORIZONTAL_TAB) {
+        throw new IOException("Invalid chunk size!");
+      }
+      countLine(MAX_CHUNK_HEADER_SIZE);
+    } else {
+      readLineEnd(b);
+    }
+    if (size == 0) {
+      readTrailers();
+      eof = true;
+      return false;
+    }
+    remaining = size;
+    needCrlf = true;
+    return true;
+  }
+
+  /** 丢弃trailer，直到读到空行 */
+  private void readTrailers() throws IOException {
+    int total = 0;
+    while (true) {
+      int b = nextByte();
+      if (b == HttpConstant.CARRIAGE_RETURN || b == HttpConstant.LINE_FEED) {
+        readLineEnd(b);
+        return;
+      }
+      total += 1 + countLine(MAX_TRAILER_SIZE - total);
+    }
+  }
+
+  /**
+   * 跳过一行剩余的内容，包括行结束符
+   *
+   * @param limit 允许跳过的最大字节数
+   * @return 跳过的字节数（不包括行结束符）
+   */
+  private int countLine(int limit) throws IOException {
+    int b;
+    int count = 0;
+    while ((b = nextByte()) != HttpConstant.CARRIAGE_RETURN && b != HttpConstant.LINE_FEED) {
+      if (++count > limit) {
+        throw new IOException("Chunk header or trailer is too large!");
+      }
+    }
+    readLineEnd(b);
+    return count;
+  }
+
+  /**
+   * 校验行结束符，兼容只有LF的情况
+   *
+   * @param b 已经读到的行结束符的第一个字节
+   */
+  private void readLineEnd(int b) throws IOException {
+    if (b == HttpConstant.CARRIAGE_RETURN) {
+      b = nextByte();
+    }
+    if (b != HttpConstant.LINE_FEED) {
+      throw new IOException("Invalid chunk line end!");
+    }
+  }
+
+  private int nextByte() throws IOException {
+    int b = input.read();
+    if (b < 0) {
+      throw new EOFException("Chunked request body is incomplete!");
+    }
+    return b;
+  }
+}
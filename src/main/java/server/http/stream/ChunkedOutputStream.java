@@ -0,0 +1,129 @@
+package server.http.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Transfer-Encoding: chunked响应体的编码流。每次write输出一个chunk，连接是通道输出流时chunk头、数据和结尾的CRLF
+ * 一次聚合写出，第一个chunk还可以带上响应头；{@link #finish()}输出大小为0的最后一个chunk，之后连接可以继续处理下一个请求。
+ *
+ * <p>关闭流只会结束chunk编码，不会关闭连接。
+ *
+ * @author zhout
+ * @date 2020/7/4 15:40
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+  private static final byte[] CRLF = {'\r', '\n'};
+
+  private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+  private OutputStream output;
+
+  /** chunk头：最多8位十六进制长度加CRLF */
+  private final byte[] header = new byte[10];
+
+  private final byte[] single = new byte[1];
+
+  private boolean finished;
+
+  public ChunkedOutputStream(OutputStream output) {
+    this.output = output;
+  }
+
+  /**
+   * 绑定到新的输出流，开始下一个响应体的编码
+   *
+   * @param output 连接输出流
+   */
+  public void reset(OutputStream output) {
+    this.output = output;
+    this.finished = false;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    single[0] = (byte) b;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    write(null, b, off, len);
+  }
+
+  /**
+   * 输出一个chunk，prefix不为null时先输出prefix（例如还没有发送的响应头），全部内容一次聚合写出
+   *
+   * @param prefix chunk之前需要输出的内容，可以为null
+   * @param b 数据
+   * @param off 起始位置
+   * @param len 长度
+   * @throws IOException 写出错
+   */
+  public void write(ByteBuffer prefix, byte[] b, int off, int len) throws IOException {
+    if (finished) {
+      throw new IOException("Chunked stream is already finished!");
+    }
+    // 长度为0的chunk表示结束，不能输出
+    if (len == 0) {
+      if (prefix != null) {
+        writeBuffers(prefix);
+      }
+      return;
+    }
+    int start = header.length - 2;
+    header[start] = '\r';
+    header[start + 1] = '\n';
+    int size = len;
+    do {
+      header[--start] = HEX[size & 0xF];
+      size >>>= 4;
+    } while (size != 0);
+    ByteBuffer chunkHeader = ByteBuffer.wrap(header, start, header.length - start);
+    ByteBuffer data = ByteBuffer.wrap(b, off, len);
+    ByteBuffer end = ByteBuffer.wrap(CRLF);
+    if (prefix != null) {
+      writeBuffers(prefix, chunkHeader, data, end);
+    } else {
+      writeBuffers(chunkHeader, data, end);
+    }
+  }
+
+  private void writeBuffers(ByteBuffer... buffers) throws IOException {
+    if (output instanceof ChannelOutputStream) {
+      ((ChannelOutputStream) output).write(buffers);
+      return;
+    }
+    for (ByteBuffer buffer : buffers) {
+      output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+  }
+
+  /**
+   * 输出最后一个chunk，结束响应体。重复调用不会重复输出
+   *
+   * @throws IOException 写出错
+   */
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    output.write(LAST_CHUNK);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    output.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    finish();
+  }
+}
@@ -0,0 +1,86 @@
+package server.http.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 带有可直接访问的堆缓冲区的连接输入流。请求解析器直接扫描缓冲区中的字节，不需要逐字节调用read； 缓冲区在同一连接的多个请求之间复用，流水线请求不会丢失。
+ *
+ * <p>缓冲区在两次操作之间始终处于读模式（flip之后），position之前的数据已被消费。
+ *
+ * @author zhout
+ * @date 2020/7/4 10:20
+ */
+public abstract class InputBuffer extends InputStream {
+
+  /**
+   * 获取连接的读缓冲区
+   *
+   * @return 处于读模式的堆缓冲区
+   */
+  public abstract ByteBuffer getBuffer();
+
+  /**
+   * 阻塞读取更多数据追加到缓冲区末尾。缓冲区中未消费的数据会先移动到缓冲区开头， 所以调用方只能保存相对position的偏移量。缓冲区已满时不能调用
+   *
+   * @return 读到的字节数，-1表示连接已关闭
+   * @throws IOException 读取出错或超时
+   */
+  public abstract int fill() throws IOException;
+
+  /** 缓冲区已满，无法再读入数据 */
+  public boolean isFull() {
+    ByteBuffer buffer = getBuffer();
+    return buffer.position() == 0 && buffer.limit() == buffer.capacity();
+  }
+
+  @Override
+  public int read() throws IOException {
+    ByteBuffer buffer = getBuffer();
+    if (!buffer.hasRemaining() && fill() < 0) {
+      return -1;
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    ByteBuffer buffer = getBuffer();
+    if (!buffer.hasRemaining() && fill() < 0) {
+      return -1;
+    }
+    int read = Math.min(len, buffer.remaining());
+    buffer.get(b, off, read);
+    return read;
+  }
+
+  /** 直接移动缓冲区的position，缓冲区为空时先读入数据 */
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    ByteBuffer buffer = getBuffer();
+    if (!buffer.hasRemaining() && fill() < 0) {
+      return 0;
+    }
+    int skipped = (int) Math.min(n, buffer.remaining());
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  /** 只返回缓冲区中已有的字节数，不会触发读取 */
+  @Override
+  public int available() {
+    return getBuffer().remaining();
+  }
+
+  @Override
+  public void close() {
+    // 连接由连接器关闭
+  }
+}
@@ -2,6 +2,7 @@ package server.http.stream;
 
 import server.http.carrier.HttpRequest;
 import javax.servlet.ServletInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -9,6 +10,9 @@ import java.io.InputStream;
  * Convenience implementation of <b>ServletInputStream</b> that works with the standard
  * implementations of <b>Request</b>. If the content length has been set on our associated Request,
  * this implementation will enforce not reading more than that many bytes on the underlying stream.
+ * A request without a content length has no body (RFC 7230 section 3.3.3), and a connection closed
+ * before the declared length has been read is reported as an {@link EOFException}. A chunked
+ * request body is decoded by a {@link ChunkedInputStream} and ends with its last chunk.
  *
  * @author Craig R. McClanahan
  * @version $Revision: 1.6 $ $Date: 2002/03/18 07:15:39 $
@@ -26,8 +30,13 @@ public class RequestStream extends ServletInputStream {
     super();
     closed = false;
     count = 0;
-    length = request.getContentLength();
-    stream = request.getStream();
+    if (request.isChunked()) {
+      length = -1;
+      stream = new ChunkedInputStream(request.getStream());
+    } else {
+      length = Math.max(0, request.getContentLengthLong());
+      stream = request.getStream();
+    }
   }
 
   // ----------------------------------------------------- Instance Variables
@@ -36,12 +45,16 @@ public class RequestStream extends ServletInputStream {
   protected boolean closed = false;
 
   /** The number of bytes which have already been returned by this stream. */
-  protected int count = 0;
+  protected long count = 0;
 
   /**
-   * The content length past which we will not read, or -1 if there is no defined content length.
+   * The content length past which we will not read, or -1 if the body is chunked and ends with its
+   * last chunk.
    */
-  protected int length = -1;
+  protected long length = 0;
+
+  /** Has the end of a chunked body been reached? */
+  protected boolean finished = false;
 
   /** The underlying input stream from which we should read data. */
   protected InputStream stream = null;
@@ -50,23 +63,51 @@ public class RequestStream extends ServletInputStream {
 
   /**
    * Close this input stream. No physical level I-O is performed, but any further attempt to read
-   * from this stream will throw an IOException. If a content length has been set but not all of the
-   * bytes have yet been consumed, the remaining bytes will be swallowed.
+   * from this stream will throw an IOException. If not all of the body has yet been consumed, the
+   * remaining bytes will be swallowed.
    */
   @Override
   public void close() throws IOException {
     if (closed) {
       throw new IOException("requestStream.close.closed");
     }
-    if (length > 0) {
-      while (count < length) {
-        int b = read();
-        if (b < 0) {
-          break;
-        }
+    swallow(Long.MAX_VALUE);
+    closed = true;
+  }
+
+  /**
+   * Swallow the unread part of the body, so that the next request on the connection starts at the
+   * right position.
+   *
+   * @param limit The maximum number of bytes to be swallowed
+   * @return <code>true</code> if the whole body has been consumed, <code>false</code> if more than
+   *     <code>limit</code> bytes were left
+   * @exception IOException if an input/output error occurs
+   */
+  public boolean swallow(long limit) throws IOException {
+    if (length >= 0 && length - count > limit) {
+      return false;
+    }
+    long start = count;
+    while (!isFinished()) {
+      if (count - start > limit) {
+        return false;
+      }
+      if (skip(Long.MAX_VALUE) <= 0 && !isFinished()) {
+        throw new EOFException("requestStream.read.incomplete");
       }
     }
-    closed = true;
+    return true;
+  }
+
+  /** Has the whole body been read? */
+  public boolean isFinished() {
+    return length >= 0 ? count >= length : finished;
+  }
+
+  /** Has this stream been closed? */
+  public boolean isClosed() {
+    return closed;
   }
 
   /**
@@ -82,16 +123,17 @@ public class RequestStream extends ServletInputStream {
       throw new IOException("requestStream.read.closed");
     }
 
-    // Have we read the specified content length already?
-    if ((length >= 0) && (count >= length)) {
+    // Have we read the whole body already?
+    if (isFinished()) {
       return (-1); // End of file indicator
     }
 
     // Read and count the next byte, then return it
     int b = stream.read();
-    if (b >= 0) {
-      count++;
+    if (b < 0) {
+      return endOfStream();
     }
+    count++;
     return (b);
   }
 
@@ -121,16 +163,60 @@ public class RequestStream extends ServletInputStream {
    */
   @Override
   public int read(byte[] b, int off, int len) throws IOException {
-    int toRead = len;
-    if (length > 0) {
-      if (count >= length) {
-        return (-1);
-      }
-      if ((count + len) > length) {
-        toRead = length - count;
-      }
+    if (closed) {
+      throw new IOException("requestStream.read.closed");
     }
-    int actuallyRead = super.read(b, off, toRead);
+    if (isFinished()) {
+      return (-1);
+    }
+    int toRead = length >= 0 ? (int) Math.min(len, length - count) : len;
+    int actuallyRead = stream.read(b, off, toRead);
+    if (actuallyRead < 0) {
+      return endOfStream();
+    }
+    count += actuallyRead;
     return (actuallyRead);
   }
+
+  /**
+   * Skip over and discard up to <code>n</code> bytes of the body, without reading past its end.
+   *
+   * @param n The number of bytes to be skipped
+   * @exception IOException if an input/output error occurs
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0 || isFinished()) {
+      return 0;
+    }
+    long skipped = stream.skip(length >= 0 ? Math.min(n, length - count) : n);
+    if (skipped <= 0) {
+      // skip may return 0 without reaching end of file, read one byte to find out
+      return read() < 0 ? 0 : 1;
+    }
+    count += skipped;
+    return skipped;
+  }
+
+  /** Return the number of body bytes which can be read without blocking. */
+  @Override
+  public int available() throws IOException {
+    if (isFinished()) {
+      return 0;
+    }
+    int available = stream.available();
+    return length >= 0 ? (int) Math.min(available, length - count) : available;
+  }
+
+  /**
+   * The underlying stream has ended: the end of a chunked body, or a connection closed before the
+   * content length has been read.
+   */
+  private int endOfStream() throws IOException {
+    if (length >= 0) {
+      throw new EOFException("requestStream.read.incomplete");
+    }
+    finished = true;
+    return (-1);
+  }
 }
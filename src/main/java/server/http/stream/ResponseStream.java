@@ -0,0 +1,168 @@
+package server.http.stream;
+
+import server.http.carrier.HttpResponse;
+
+import javax.servlet.ServletOutputStream;
+import java.io.IOException;
+
+/**
+ * 带缓冲的Servlet响应输出流。servlet的输出先写入缓冲区，缓冲区满或者servlet主动flush时才提交响应头并写出，
+ * 多次小的写入合并成少量的Socket写；响应结束时还没有提交的话，响应体长度已知，可以用Content-Length代替chunked编码。
+ *
+ * <p>缓冲区数组属于HttpProcess，在这个HttpProcess处理的请求之间复用；setBufferSize要求更大的缓冲区时才为本次响应单独分配。
+ * 关闭流只会禁止继续写入，响应由{@link HttpResponse#finishResponse()}结束。servlet拿到的是外观对象，不直接持有这个流。
+ *
+ * @author zhout
+ * @date 2020/7/4 17:20
+ */
+public class ResponseStream extends ServletOutputStream {
+
+  private final HttpResponse response;
+
+  private byte[] buffer;
+
+  /** 复用的缓冲区数组，setBufferSize单独分配的缓冲区在回收时丢弃 */
+  private final byte[] sharedBuffer;
+
+  /** 缓冲区的有效大小，可能小于数组长度 */
+  private int size;
+
+  /** 缓冲区中待写出的字节数 */
+  private int count;
+
+  /** 是否写入过数据，写入后不能再修改缓冲区大小 */
+  private boolean written;
+
+  /** 响应正在结束，flush只把writer中的内容刷到缓冲区，不提交响应 */
+  private boolean finishing;
+
+  private boolean closed;
+
+  /**
+   * 构造方法
+   *
+   * @param response 所属的响应
+   * @param buffer 复用的缓冲区数组
+   */
+  public ResponseStream(HttpResponse response, byte[] buffer) {
+    this.response = response;
+    this.buffer = buffer;
+    this.sharedBuffer = buffer;
+    this.size = buffer.length;
+  }
+
+  /** 恢复初始状态，准备输出下一个响应 */
+  public void recycle() {
+    buffer = sharedBuffer;
+    size = sharedBuffer.length;
+    count = 0;
+    written = false;
+    finishing = false;
+    closed = false;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkClosed();
+    written = true;
+    if (count >= size) {
+      flushBuffer();
+      if (size == 0) {
+        response.getBodyStream().write(b);
+        return;
+      }
+    }
+    buffer[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkClosed();
+    if (len == 0) {
+      return;
+    }
+    written = true;
+    if (len > size - count) {
+      flushBuffer();
+      // 不小于缓冲区的数据直接写出，不再复制
+      if (len >= size) {
+        response.getBodyStream().write(b, off, len);
+        return;
+      }
+    }
+    System.arraycopy(b, off, buffer, count, len);
+    count += len;
+  }
+
+  /** servlet主动flush会提交响应；响应结束时writer的flush只刷到缓冲区 */
+  @Override
+  public void flush() throws IOException {
+    if (finishing) {
+      return;
+    }
+    flushBuffer();
+    response.getBodyStream().flush();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  /**
+   * 写出缓冲区中的内容，还没有提交时和响应头一起写出
+   *
+   * @throws IOException 写出错
+   */
+  public void flushBuffer() throws IOException {
+    if (!response.isCommitted()) {
+      // 响应头和缓冲区中的内容一起写出
+      response.commit(buffer, 0, count);
+      count = 0;
+    } else if (count > 0) {
+      response.getBodyStream().write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  /** 丢弃缓冲区中还没有写出的内容 */
+  public void resetBuffer() {
+    count = 0;
+  }
+
+  /**
+   * 设置缓冲区大小，需要在写入数据之前调用
+   *
+   * @param size 缓冲区大小
+   */
+  public void setBufferSize(int size) {
+    if (written) {
+      throw new IllegalStateException("Response content has been written");
+    }
+    size = Math.max(0, size);
+    if (size > buffer.length) {
+      buffer = new byte[size];
+    }
+    this.size = size;
+  }
+
+  public int getBufferSize() {
+    return size;
+  }
+
+  /** 缓冲区中待写出的字节数 */
+  public int getBufferedCount() {
+    return count;
+  }
+
+  /** 响应开始结束，之后的flush不再提交响应 */
+  public void setFinishing() {
+    this.finishing = true;
+  }
+
+  private void checkClosed() throws IOException {
+    if (closed) {
+      throw new IOException("Response stream is closed");
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package server.http.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 阻塞Socket输入流的{@link InputBuffer}实现。缓冲区属于HttpProcess，处理新连接时重新绑定输入流即可复用
+ *
+ * @author zhout
+ * @date 2020/7/4 10:30
+ */
+public class StreamInputBuffer extends InputBuffer {
+
+  private final ByteBuffer buffer;
+
+  private InputStream stream;
+
+  public StreamInputBuffer(int size) {
+    this.buffer = ByteBuffer.allocate(size);
+    this.buffer.flip();
+  }
+
+  /**
+   * 绑定新的连接输入流，丢弃缓冲区中上一个连接的残留数据
+   *
+   * @param stream 连接输入流，传null表示解除绑定
+   */
+  public void bind(InputStream stream) {
+    this.stream = stream;
+    buffer.clear().flip();
+  }
+
+  @Override
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public int fill() throws IOException {
+    // 缓冲区已读完时直接重置，避免compact拷贝
+    if (buffer.hasRemaining()) {
+      buffer.compact();
+    } else {
+      buffer.clear();
+    }
+    int read;
+    try {
+      read =
+          stream.read(
+              buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      if (read > 0) {
+        buffer.position(buffer.position() + read);
+      }
+    } finally {
+      buffer.flip();
+    }
+    return read;
+  }
+}
@@ -0,0 +1,37 @@
+package server.servlet;
+
+/**
+ * 请求URI的映射结果
+ *
+ * @author zhout
+ * @date 2020/7/5 16:10
+ */
+public class MappingData {
+
+  /** 处理请求的Servlet名 */
+  private final String servletName;
+
+  /** 匹配到的Servlet路径 */
+  private final String servletPath;
+
+  /** Servlet路径之后剩余的部分，没有时为null */
+  private final String pathInfo;
+
+  public MappingData(String servletName, String servletPath, String pathInfo) {
+    this.servletName = servletName;
+    this.servletPath = servletPath;
+    this.pathInfo = pathInfo;
+  }
+
+  public String getServletName() {
+    return servletName;
+  }
+
+  public String getServletPath() {
+    return servletPath;
+  }
+
+  public String getPathInfo() {
+    return pathInfo;
+  }
+}
@@ -0,0 +1,144 @@
+package server.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 监视Servlet类目录。后台线程通过{@link WatchService}接收文件系统事件，.class文件新增、修改或删除后，
+ * 等到一段时间内没有新的变化（一次编译通常会写多个文件）再通知重新部署，请求处理路径上不需要检查文件时间戳
+ *
+ * @author zhout
+ * @date 2020/7/5 19:30
+ */
+public class ServletClassWatcher implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServletClassWatcher.class);
+
+  private final Path directory;
+
+  /** 类文件发生变化后的回调 */
+  private final Runnable listener;
+
+  /** 最后一次变化之后等待的静默时间（毫秒） */
+  private final long quietMillis;
+
+  private WatchService watchService;
+
+  /**
+   * 构造方法
+   *
+   * @param directory Servlet类目录，子目录（包）一起监视
+   * @param listener 类文件发生变化后的回调，在监视线程中执行
+   * @param quietMillis 最后一次变化之后等待的静默时间（毫秒）
+   */
+  public ServletClassWatcher(Path directory, Runnable listener, long quietMillis) {
+    this.directory = directory;
+    this.listener = listener;
+    this.quietMillis = quietMillis;
+  }
+
+  /** 注册目录并启动监视线程，目录不存在或者注册失败时不监视 */
+  public void start() {
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+      registerAll(directory);
+    } catch (IOException e) {
+      LOGGER.warn(String.format("Watch servlet directory %s is fail!", directory), e);
+      stop();
+      return;
+    }
+    Thread thread = new Thread(this, "servlet-watcher");
+    thread.setDaemon(true);
+    thread.start();
+    LOGGER.info("Watching servlet classes in {}", directory);
+  }
+
+  /** 停止监视线程 */
+  public void stop() {
+    if (watchService == null) {
+      return;
+    }
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      LOGGER.debug("Close watch service is fail.", e);
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        if (!handle(watchService.take())) {
+          continue;
+        }
+        // 继续收集事件，直到静默时间内没有新的变化
+        WatchKey key;
+        while ((key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+          handle(key);
+        }
+        try {
+          listener.run();
+        } catch (RuntimeException e) {
+          LOGGER.warn("Redeploy servlets is fail!", e);
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      LOGGER.debug("Servlet watcher is stopped.");
+    }
+  }
+
+  /**
+   * 处理一个目录上的事件，新建的子目录加入监视
+   *
+   * @param key 有事件的目录
+   * @return 是否有类文件发生变化
+   */
+  private boolean handle(WatchKey key) {
+    Path dir = (Path) key.watchable();
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        changed = true;
+        continue;
+      }
+      Path path = dir.resolve((Path) event.context());
+      if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+        try {
+          registerAll(path);
+        } catch (IOException e) {
+          LOGGER.warn(String.format("Watch servlet directory %s is fail!", path), e);
+        }
+        changed = true;
+      } else if (path.toString().endsWith(".class")) {
+        changed = true;
+      }
+    }
+    key.reset();
+    return changed;
+  }
+
+  private void registerAll(Path root) throws IOException {
+    try (Stream<Path> dirs = Files.walk(root)) {
+      for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+        dir.register(
+            watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+      }
+    }
+  }
+}
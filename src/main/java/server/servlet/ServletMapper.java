@@ -0,0 +1,165 @@
+package server.servlet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * URI到Servlet的映射表，按Servlet规范的顺序匹配：精确路径、最长的前缀路径（/api/*）、扩展名（*.do）、默认Servlet（/）。
+ * 映射在启动时一次编译好，之后只读，多个工作线程可以并发查找
+ *
+ * <p>精确路径和扩展名用HashMap查找；前缀路径按'/'分段组成字典树，查找时沿URI逐段向下走，直接和URI的区间比较，
+ * 不需要为每一段创建字符串，耗时只和URI长度有关。
+ *
+ * @author zhout
+ * @date 2020/7/5 16:20
+ */
+public class ServletMapper {
+
+  /** 精确路径 -> Servlet名 */
+  private final Map<String, String> exactMappings = new HashMap<>();
+
+  /** 扩展名（不含'.'） -> Servlet名 */
+  private final Map<String, String> extensionMappings = new HashMap<>();
+
+  /** 前缀路径字典树的根，对应/* */
+  private final Node root = new Node("");
+
+  /** 默认Servlet名，没有时为null */
+  private String defaultServlet;
+
+  /**
+   * 添加一条映射，需要在开始查找之前完成
+   *
+   * @param pattern URL模式：/a/b、/a/*、*.ext或者/
+   * @param servletName Servlet名
+   * @throws IllegalStateException 模式不合法或者重复
+   */
+  public void addMapping(String pattern, String servletName) {
+    String previous;
+    if ("/".equals(pattern)) {
+      previous = defaultServlet;
+      defaultServlet = servletName;
+    } else if (pattern.startsWith("*.") && pattern.indexOf('/') < 0 && pattern.length() > 2) {
+      previous = extensionMappings.put(pattern.substring(2), servletName);
+    } else if (!pattern.startsWith("/") || pattern.indexOf('*') != pattern.lastIndexOf('*')) {
+      throw new IllegalStateException("Invalid servlet mapping: " + pattern);
+    } else if (pattern.endsWith("/*")) {
+      Node node = root;
+      String path = pattern.substring(0, pattern.length() - 2);
+      int start = 1;
+      while (start <= path.length()) {
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+          end = path.length();
+        }
+        node = node.addChild(path.substring(start, end));
+        start = end + 1;
+      }
+      previous = node.servletName;
+      node.servletName = servletName;
+      node.servletPath = path;
+    } else if (pattern.indexOf('*') < 0) {
+      previous = exactMappings.put(pattern, servletName);
+    } else {
+      throw new IllegalStateException("Invalid servlet mapping: " + pattern);
+    }
+    if (previous != null) {
+      throw new IllegalStateException("Duplicate servlet mapping: " + pattern);
+    }
+  }
+
+  /**
+   * 查找处理URI的Servlet
+   *
+   * @param uri 规范化之后的请求URI，不带查询字符串
+   * @return 映射结果，没有匹配的Servlet时返回null
+   */
+  public MappingData map(String uri) {
+    String servletName = exactMappings.get(uri);
+    if (servletName != null) {
+      return new MappingData(servletName, uri, null);
+    }
+    MappingData data = mapPrefix(uri);
+    if (data != null) {
+      return data;
+    }
+    int slash = uri.lastIndexOf('/');
+    int dot = uri.lastIndexOf('.');
+    if (dot > slash && !extensionMappings.isEmpty()) {
+      servletName = extensionMappings.get(uri.substring(dot + 1));
+      if (servletName != null) {
+        return new MappingData(servletName, uri, null);
+      }
+    }
+    return defaultServlet != null ? new MappingData(defaultServlet, uri, null) : null;
+  }
+
+  /** 沿字典树查找最长的前缀路径 */
+  private MappingData mapPrefix(String uri) {
+    Node node = root;
+    Node matched = root.servletName != null ? root : null;
+    int matchedEnd = 0;
+    int start = 1;
+    int length = uri.length();
+    while (start <= length) {
+      int end = uri.indexOf('/', start);
+      if (end < 0) {
+        end = length;
+      }
+      node = node.findChild(uri, start, end);
+      if (node == null) {
+        break;
+      }
+      if (node.servletName != null) {
+        matched = node;
+        matchedEnd = end;
+      }
+      start = end + 1;
+    }
+    if (matched == null) {
+      return null;
+    }
+    String pathInfo = matchedEnd < length ? uri.substring(matchedEnd) : null;
+    return new MappingData(matched.servletName, matched.servletPath, pathInfo);
+  }
+
+  /** 前缀路径字典树的节点，对应路径中的一段 */
+  private static class Node {
+
+    private final String segment;
+
+    private Node[] children = new Node[0];
+
+    /** 以这个节点结尾的前缀映射，没有时为null */
+    private String servletName;
+
+    /** 前缀映射去掉/*之后的路径 */
+    private String servletPath;
+
+    private Node(String segment) {
+      this.segment = segment;
+    }
+
+    /** 子节点通常很少，线性比较比哈希查找更快，也不需要截取字符串 */
+    private Node findChild(String uri, int start, int end) {
+      int length = end - start;
+      for (Node child : children) {
+        if (child.segment.length() == length && uri.regionMatches(start, child.segment, 0, length)) {
+          return child;
+        }
+      }
+      return null;
+    }
+
+    private Node addChild(String segment) {
+      Node child = findChild(segment, 0, segment.length());
+      if (child == null) {
+        child = new Node(segment);
+        children = Arrays.copyOf(children, children.length + 1);
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+  }
+}
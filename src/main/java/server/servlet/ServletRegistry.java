@@ -0,0 +1,189 @@
+package server.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.config.ServerConfig;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servlet注册表。每个Servlet类只加载一次，包装成{@link ServletWrapper}缓存起来，所有请求共用同一个已初始化的实例。
+ * 找不到的类不缓存，避免随意的请求URI撑大注册表。
+ *
+ * <p>servlet.loadOnStartup中列出的Servlet在启动时按顺序初始化，其他Servlet在第一次请求时初始化；服务器停止时销毁全部实例。
+ *
+ * <p>一个注册表对应一代类加载器。重新部署时新建一代替换当前这一代，旧的一代先{@link #retire(long)}：
+ * 不再接受新请求，等正在处理的请求结束后再销毁Servlet并关闭类加载器。请求处理期间需要用{@link #acquire()}和
+ * {@link #release()}登记。
+ *
+ * @author zhout
+ * @date 2020/7/5 14:20
+ */
+public class ServletRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServletRegistry.class);
+
+  /** 初始化参数的配置前缀，完整的key是servlet.init.&lt;Servlet名&gt;.&lt;参数名&gt; */
+  private static final String INIT_PARAMETER_PREFIX = "servlet.init.";
+
+  private final ClassLoader classLoader;
+
+  private final ServerConfig config;
+
+  private final ConcurrentMap<String, ServletWrapper> wrappers = new ConcurrentHashMap<>();
+
+  /** 正在使用这一代Servlet处理的请求数 */
+  private final AtomicInteger active = new AtomicInteger();
+
+  /** 已经被新的一代替换，不再接受新请求 */
+  private volatile boolean retired;
+
+  /**
+   * 构造方法
+   *
+   * @param classLoader 加载Servlet类的类加载器
+   * @param config 服务器配置
+   */
+  public ServletRegistry(ClassLoader classLoader, ServerConfig config) {
+    this.classLoader = classLoader;
+    this.config = config;
+  }
+
+  public ClassLoader getClassLoader() {
+    return classLoader;
+  }
+
+  /**
+   * 获取Servlet包装，第一次获取时加载Servlet类
+   *
+   * @param name Servlet类名
+   * @return Servlet包装，类不存在或者不是Servlet时返回null
+   */
+  public ServletWrapper getWrapper(String name) {
+    ServletWrapper wrapper = wrappers.get(name);
+    if (wrapper != null) {
+      return wrapper;
+    }
+    Class<? extends Servlet> servletClass = loadServletClass(name);
+    if (servletClass == null) {
+      return null;
+    }
+    return wrappers.computeIfAbsent(
+        name,
+        key ->
+            new ServletWrapper(
+                key,
+                servletClass,
+                new StandardServletConfig(key, config.getByPrefix(INIT_PARAMETER_PREFIX + key + "."))));
+  }
+
+  private Class<? extends Servlet> loadServletClass(String name) {
+    Class<?> clazz;
+    try {
+      clazz = classLoader.loadClass(name);
+    } catch (ClassNotFoundException | LinkageError e) {
+      LOGGER.info("servlet {} not found!", name);
+      return null;
+    }
+    if (!Servlet.class.isAssignableFrom(clazz)) {
+      LOGGER.info("{} is not a servlet!", name);
+      return null;
+    }
+    return clazz.asSubclass(Servlet.class);
+  }
+
+  /**
+   * 按配置顺序初始化需要在启动时加载的Servlet，单个Servlet失败不影响启动
+   *
+   * @param names 逗号分隔的Servlet类名
+   */
+  public void loadOnStartup(String names) {
+    if (names == null) {
+      return;
+    }
+    for (String name : names.split(",")) {
+      name = name.trim();
+      if (name.isEmpty()) {
+        continue;
+      }
+      ServletWrapper wrapper = getWrapper(name);
+      if (wrapper == null) {
+        continue;
+      }
+      try {
+        wrapper.allocate();
+      } catch (ServletException e) {
+        LOGGER.warn(String.format("Load servlet %s on startup is fail!", name), e);
+      }
+    }
+  }
+
+  /**
+   * 登记一个使用这一代Servlet的请求
+   *
+   * @return 是否登记成功，这一代已经被替换时返回false，调用方需要改用新的一代
+   */
+  public boolean acquire() {
+    active.incrementAndGet();
+    if (retired) {
+      release();
+      return false;
+    }
+    return true;
+  }
+
+  /** 请求处理结束，和{@link #acquire()}成对调用 */
+  public void release() {
+    if (active.decrementAndGet() == 0 && retired) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * 停止接受新请求，等待正在处理的请求结束后销毁。超时后不再等待，仍在处理的请求可能会使用已经销毁的Servlet
+   *
+   * @param timeoutMillis 最长等待时间（毫秒）
+   */
+  public void retire(long timeoutMillis) {
+    retired = true;
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    synchronized (this) {
+      long remaining;
+      while (active.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    if (active.get() > 0) {
+      LOGGER.warn("{} requests are still running on the retired servlets.", active.get());
+    }
+    destroy();
+  }
+
+  /** 销毁所有已初始化的Servlet并关闭类加载器 */
+  public void destroy() {
+    for (ServletWrapper wrapper : wrappers.values()) {
+      wrapper.destroy();
+    }
+    wrappers.clear();
+    if (classLoader instanceof Closeable) {
+      try {
+        ((Closeable) classLoader).close();
+      } catch (IOException e) {
+        LOGGER.warn("Close servlet classloader is fail!", e);
+      }
+    }
+  }
+}
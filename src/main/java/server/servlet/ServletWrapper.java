@@ -0,0 +1,107 @@
+package server.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.UnavailableException;
+import javax.servlet.annotation.MultipartConfig;
+
+/**
+ * 一个Servlet的包装。第一次使用时实例化并调用init，之后所有请求共用同一个实例；init失败不会缓存实例，下一次请求重新初始化。
+ * 销毁后不能再分配
+ *
+ * @author zhout
+ * @date 2020/7/5 14:10
+ */
+public class ServletWrapper {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServletWrapper.class);
+
+  private final String name;
+
+  private final Class<? extends Servlet> servletClass;
+
+  private final ServletConfig config;
+
+  /** Servlet类上@MultipartConfig声明的上传配置，没有声明时为null */
+  private final MultipartConfigElement multipartConfig;
+
+  /** 已初始化的实例，没有初始化时为null */
+  private volatile Servlet instance;
+
+  private boolean destroyed;
+
+  public ServletWrapper(String name, Class<? extends Servlet> servletClass, ServletConfig config) {
+    this.name = name;
+    this.servletClass = servletClass;
+    this.config = config;
+    MultipartConfig annotation = servletClass.getAnnotation(MultipartConfig.class);
+    this.multipartConfig = annotation == null ? null : new MultipartConfigElement(annotation);
+  }
+
+  /**
+   * 获取已初始化的Servlet实例，第一次调用时实例化并初始化
+   *
+   * @return Servlet实例
+   * @throws ServletException 实例化或初始化失败，或者已经销毁
+   */
+  public Servlet allocate() throws ServletException {
+    Servlet servlet = instance;
+    if (servlet != null) {
+      return servlet;
+    }
+    synchronized (this) {
+      if (instance == null) {
+        if (destroyed) {
+          throw new UnavailableException("Servlet " + name + " has been destroyed");
+        }
+        instance = load();
+      }
+      return instance;
+    }
+  }
+
+  private Servlet load() throws ServletException {
+    Servlet servlet;
+    try {
+      servlet = servletClass.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new ServletException("Instantiate servlet " + name + " is fail!", e);
+    }
+    long start = System.currentTimeMillis();
+    servlet.init(config);
+    LOGGER.info("Servlet {} initialized in {} ms", name, System.currentTimeMillis() - start);
+    return servlet;
+  }
+
+  /** 调用Servlet的destroy，之后不能再分配 */
+  public synchronized void destroy() {
+    destroyed = true;
+    Servlet servlet = instance;
+    if (servlet == null) {
+      return;
+    }
+    instance = null;
+    try {
+      servlet.destroy();
+    } catch (Throwable e) {
+      LOGGER.warn(String.format("Destroy servlet %s is fail!", name), e);
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public MultipartConfigElement getMultipartConfig() {
+    return multipartConfig;
+  }
+
+  public boolean isInitialized() {
+    return instance != null;
+  }
+}
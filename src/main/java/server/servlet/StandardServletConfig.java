@@ -0,0 +1,46 @@
+package server.servlet;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+
+/**
+ * Servlet初始化配置，初始化参数来自server.properties中的servlet.init.&lt;Servlet名&gt;.&lt;参数名&gt;。
+ * 服务器目前还没有ServletContext，{@link #getServletContext()}返回null
+ *
+ * @author zhout
+ * @date 2020/7/5 14:05
+ */
+public class StandardServletConfig implements ServletConfig {
+
+  private final String servletName;
+
+  private final Map<String, String> initParameters;
+
+  public StandardServletConfig(String servletName, Map<String, String> initParameters) {
+    this.servletName = servletName;
+    this.initParameters = initParameters;
+  }
+
+  @Override
+  public String getServletName() {
+    return servletName;
+  }
+
+  @Override
+  public ServletContext getServletContext() {
+    return null;
+  }
+
+  @Override
+  public String getInitParameter(String name) {
+    return initParameters.get(name);
+  }
+
+  @Override
+  public Enumeration<String> getInitParameterNames() {
+    return Collections.enumeration(initParameters.keySet());
+  }
+}
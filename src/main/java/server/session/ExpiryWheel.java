@@ -0,0 +1,126 @@
+package server.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 会话过期用的时间轮。每个槽对应一个tick，会话按过期时间放进对应的槽，后台线程每个tick只处理当前槽，
+ * 不需要扫描全部会话。
+ *
+ * <p>会话被访问后过期时间推后，但不会移动位置：槽到期时重新检查，没有真正过期的放回新的槽。
+ * 超过一圈的过期时间会提前一圈或几圈被检查，效果等同于带圈数的时间轮。每个会话同一时间最多在轮中出现一次
+ *
+ * @author zhout
+ * @date 2020/7/6 15:00
+ */
+class ExpiryWheel {
+
+  private final long tickMillis;
+
+  private final Queue<StandardSession>[] slots;
+
+  private final int mask;
+
+  /** 下一个待处理的tick */
+  private volatile long cursor;
+
+  /**
+   * 构造方法
+   *
+   * @param tickMillis 每个槽的时间跨度（毫秒）
+   * @param slotCount 槽数，取不小于它的2的幂
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  ExpiryWheel(long tickMillis, int slotCount) {
+    int size = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+    this.tickMillis = tickMillis;
+    this.slots = new Queue[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new ConcurrentLinkedQueue<>();
+    }
+    this.mask = size - 1;
+    this.cursor = System.currentTimeMillis() / tickMillis;
+  }
+
+  /**
+   * 按会话当前的过期时间放入时间轮，永不过期或者已经在轮中的会话不处理
+   *
+   * @param session 会话
+   */
+  void schedule(StandardSession session) {
+    long expiry = session.getExpiryTime();
+    if (expiry == Long.MAX_VALUE || !session.markScheduled()) {
+      return;
+    }
+    // 不能放进当前正在处理或已经处理过的槽
+    long tick = Math.max(expiry / tickMillis, cursor + 1);
+    slots[(int) (tick & mask)].offer(session);
+  }
+
+  /**
+   * 处理到当前时间为止的所有槽，只能由一个线程调用
+   *
+   * @param now 当前时间（毫秒）
+   * @return 已经过期的会话
+   */
+  List<StandardSession> advance(long now) {
+    List<StandardSession> expired = new ArrayList<>();
+    long target = now / tickMillis;
+    // 落后超过一圈时每个槽处理一次即可
+    long start = Math.max(cursor, target - mask);
+    for (long tick = start; tick <= target; tick++) {
+      cursor = tick;
+      Queue<StandardSession> slot = slots[(int) (tick & mask)];
+      // 只处理已有的会话，放回同一个槽的会话留到下一圈
+      for (int i = slot.size(); i > 0; i--) {
+        StandardSession session = slot.poll();
+        if (session == null) {
+          break;
+        }
+        session.clearScheduled();
+        if (!session.isValid()) {
+          continue;
+        }
+        if (session.isExpired(now)) {
+          expired.add(session);
+        } else {
+          schedule(session);
+        }
+      }
+    }
+    cursor = target + 1;
+    return expired;
+  }
+
+  /**
+   * 取出过期时间最早的有效会话，用于会话数超过上限时淘汰。过期时间超过一圈的会话和同一个槽里不同圈的会话混在一起，
+   * 被访问过的会话也没有移动位置，槽的顺序不能代表过期顺序，所以按每个会话当前的过期时间比较全部会话
+   *
+   * @return 会话，轮中没有有效会话时返回null
+   */
+  StandardSession pollEarliest() {
+    while (true) {
+      StandardSession earliest = null;
+      Queue<StandardSession> owner = null;
+      for (Queue<StandardSession> slot : slots) {
+        for (StandardSession session : slot) {
+          if (session.isValid()
+              && (earliest == null || session.getExpiryTime() < earliest.getExpiryTime())) {
+            earliest = session;
+            owner = slot;
+          }
+        }
+      }
+      if (earliest == null) {
+        return null;
+      }
+      if (owner.remove(earliest)) {
+        earliest.clearScheduled();
+        return earliest;
+      }
+      // 会话刚好被后台线程取走并重新放入，重新查找
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package server.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于本地文件的会话存储。所有修改都追加到一个日志文件，内存中只保存每个会话最新记录的位置和长度，
+ * 读取时按位置直接读出这一条记录；日志中失效的记录超过有效记录时重写一个只含有效记录的新文件，再原子替换旧文件。
+ *
+ * <p>记录格式：类型（1保存，2删除）、会话ID，保存记录之后是创建时间、两个访问时间、最大不活动时间以及序列化后的属性。
+ * 启动时只扫描记录头建立索引，属性等到会话第一次被访问时才反序列化。进程在写入中途退出时，结尾不完整的记录会被截掉。
+ *
+ * @author zhout
+ * @date 2020/7/7 10:40
+ */
+public class FileSessionStore implements SessionStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileSessionStore.class);
+
+  private static final byte SAVE = 1;
+
+  private static final byte REMOVE = 2;
+
+  /** 日志小于这个大小时不压缩 */
+  private static final long COMPACT_MIN_SIZE = 1024 * 1024;
+
+  private final Path file;
+
+  /** 会话ID -> 最新保存记录的位置 */
+  private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+  /** 读取和压缩互斥，压缩期间记录的位置会变化 */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private FileChannel channel;
+
+  /** 有效记录的总字节数 */
+  private long liveBytes;
+
+  /**
+   * 构造方法
+   *
+   * @param file 日志文件
+   */
+  public FileSessionStore(Path file) {
+    this.file = file;
+  }
+
+  @Override
+  public void open() throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long end = scan();
+    if (end < channel.size()) {
+      LOGGER.warn("Truncate incomplete session records in {} at {}", file, end);
+      channel.truncate(end);
+    }
+    channel.position(end);
+    LOGGER.info("Session store {} opened with {} sessions", file, index.size());
+  }
+
+  /**
+   * 扫描日志建立索引，跳过属性部分
+   *
+   * @return 最后一条完整记录的结束位置
+   */
+  private long scan() throws IOException {
+    long now = System.currentTimeMillis();
+    DataInputStream input =
+        new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(channel.position(0)), 8192));
+    long position = 0;
+    try {
+      while (true) {
+        byte type = input.readByte();
+        String id = input.readUTF();
+        if (type == SAVE) {
+          input.readLong();
+          input.readLong();
+          long thisAccessedTime = input.readLong();
+          int maxInactiveInterval = input.readInt();
+          int length = input.readInt();
+          input.readFully(new byte[length]);
+          long end = position + recordHeaderSize(id) + length;
+          boolean expired =
+              maxInactiveInterval > 0 && now >= thisAccessedTime + maxInactiveInterval * 1000L;
+          putIndex(id, expired ? null : new Entry(position, (int) (end - position)));
+          position = end;
+        } else if (type == REMOVE) {
+          putIndex(id, null);
+          position += 1 + 2 + id.length();
+        } else {
+          LOGGER.warn("Unknown session record type {} in {} at {}", type, file, position);
+          break;
+        }
+      }
+    } catch (EOFException e) {
+      // 结尾的记录不完整
+    }
+    return position;
+  }
+
+  @Override
+  public void save(Collection<SessionData> sessions) throws IOException {
+    if (sessions.isEmpty()) {
+      return;
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+    DataOutputStream output = new DataOutputStream(buffer);
+    Map<String, Entry> written = new HashMap<>();
+    long position = channel.position();
+    for (SessionData session : sessions) {
+      int start = buffer.size();
+      byte[] attributes = serialize(session);
+      output.writeByte(SAVE);
+      output.writeUTF(session.getId());
+      output.writeLong(session.getCreationTime());
+      output.writeLong(session.getLastAccessedTime());
+      output.writeLong(session.getThisAccessedTime());
+      output.writeInt(session.getMaxInactiveInterval());
+      output.writeInt(attributes.length);
+      output.write(attributes);
+      written.put(session.getId(), new Entry(position + start, buffer.size() - start));
+    }
+    append(buffer);
+    written.forEach(this::putIndex);
+    compactIfNeeded();
+  }
+
+  @Override
+  public void remove(Collection<String> ids) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * ids.size());
+    DataOutputStream output = new DataOutputStream(buffer);
+    for (String id : ids) {
+      if (index.containsKey(id)) {
+        output.writeByte(REMOVE);
+        output.writeUTF(id);
+      }
+    }
+    if (buffer.size() == 0) {
+      return;
+    }
+    append(buffer);
+    ids.forEach(id -> putIndex(id, null));
+    compactIfNeeded();
+  }
+
+  /** 一批记录一次写到文件末尾 */
+  private void append(ByteArrayOutputStream buffer) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  @Override
+  public SessionData load(String id, ClassLoader classLoader) throws IOException {
+    byte[] record;
+    lock.readLock().lock();
+    try {
+      Entry entry = index.get(id);
+      if (entry == null) {
+        return null;
+      }
+      record = read(channel, entry);
+    } finally {
+      lock.readLock().unlock();
+    }
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+    input.readByte();
+    input.readUTF();
+    long creationTime = input.readLong();
+    long lastAccessedTime = input.readLong();
+    long thisAccessedTime = input.readLong();
+    int maxInactiveInterval = input.readInt();
+    byte[] attributes = new byte[input.readInt()];
+    input.readFully(attributes);
+    return new SessionData(
+        id,
+        creationTime,
+        lastAccessedTime,
+        thisAccessedTime,
+        maxInactiveInterval,
+        deserialize(attributes, classLoader));
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      compactIfNeeded();
+      channel.force(true);
+      channel.close();
+    }
+  }
+
+  /** 失效的记录超过一半时压缩日志 */
+  private void compactIfNeeded() throws IOException {
+    long size = channel.size();
+    if (size < COMPACT_MIN_SIZE || size < liveBytes * 2) {
+      return;
+    }
+    Path temp = file.resolveSibling(file.getFileName() + ".compact");
+    lock.writeLock().lock();
+    try (FileChannel target =
+        FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      long position = 0;
+      for (Map.Entry<String, Entry> item : index.entrySet()) {
+        Entry entry = item.getValue();
+        ByteBuffer bytes = ByteBuffer.wrap(read(channel, entry));
+        while (bytes.hasRemaining()) {
+          target.write(bytes);
+        }
+        item.setValue(new Entry(position, entry.length));
+        position += entry.length;
+      }
+      target.force(true);
+      channel.close();
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      channel.position(position);
+      LOGGER.info("Session store {} compacted from {} to {} bytes", file, size, position);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static byte[] read(FileChannel channel, Entry entry) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, entry.position + buffer.position()) < 0) {
+        throw new EOFException("Session record is truncated");
+      }
+    }
+    return buffer.array();
+  }
+
+  /** 更新索引并维护有效记录的总字节数，entry为null表示删除 */
+  private void putIndex(String id, Entry entry) {
+    Entry old = entry == null ? index.remove(id) : index.put(id, entry);
+    if (old != null) {
+      liveBytes -= old.length;
+    }
+    if (entry != null) {
+      liveBytes += entry.length;
+    }
+  }
+
+  /** 只序列化可序列化的属性，其他属性重启后丢失 */
+  private static byte[] serialize(SessionData session) throws IOException {
+    Map<String, Object> attributes = new HashMap<>();
+    session
+        .getAttributes()
+        .forEach(
+            (name, value) -> {
+              if (value instanceof Serializable) {
+                attributes.put(name, value);
+              } else {
+                LOGGER.debug("Session attribute {} is not serializable, skip it.", name);
+              }
+            });
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(attributes);
+    } catch (NotSerializableException e) {
+      // 属性内部引用了不能序列化的对象
+      LOGGER.warn("Serialize attributes of session {} is fail: {}", session.getId(), e.getMessage());
+      return serialize(new SessionData(session.getId(), 0, 0, 0, 0, new HashMap<>()));
+    }
+    return bytes.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> deserialize(byte[] bytes, ClassLoader classLoader)
+      throws IOException {
+    try (ObjectInputStream input =
+        new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+          @Override
+          protected Class<?> resolveClass(ObjectStreamClass desc)
+              throws IOException, ClassNotFoundException {
+            try {
+              return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+              return super.resolveClass(desc);
+            }
+          }
+        }) {
+      return (Map<String, Object>) input.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Deserialize session attributes is fail!", e);
+    }
+  }
+
+  /** 保存记录中属性之前部分的长度 */
+  private static int recordHeaderSize(String id) {
+    // 类型、ID长度和ID、三个时间、最大不活动时间、属性长度
+    return 1 + 2 + id.length() + 8 * 3 + 4 + 4;
+  }
+
+  /** 记录在文件中的位置 */
+  private static class Entry {
+
+    private final long position;
+
+    private final int length;
+
+    private Entry(long position, int length) {
+      this.position = position;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package server.session;
+
+import java.util.Map;
+
+/**
+ * 持久化的会话数据，{@link SessionStore}只和它打交道，不依赖内存中的会话对象
+ *
+ * @author zhout
+ * @date 2020/7/7 10:10
+ */
+public class SessionData {
+
+  private final String id;
+
+  private final long creationTime;
+
+  private final long lastAccessedTime;
+
+  private final long thisAccessedTime;
+
+  private final int maxInactiveInterval;
+
+  /** 可序列化的属性 */
+  private final Map<String, Object> attributes;
+
+  public SessionData(
+      String id,
+      long creationTime,
+      long lastAccessedTime,
+      long thisAccessedTime,
+      int maxInactiveInterval,
+      Map<String, Object> attributes) {
+    this.id = id;
+    this.creationTime = creationTime;
+    this.lastAccessedTime = lastAccessedTime;
+    this.thisAccessedTime = thisAccessedTime;
+    this.maxInactiveInterval = maxInactiveInterval;
+    this.attributes = attributes;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  public long getLastAccessedTime() {
+    return lastAccessedTime;
+  }
+
+  public long getThisAccessedTime() {
+    return thisAccessedTime;
+  }
+
+  public int getMaxInactiveInterval() {
+    return maxInactiveInterval;
+  }
+
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
+  /** 按保存时的访问时间计算是否已经过期 */
+  public boolean isExpired(long now) {
+    return maxInactiveInterval > 0 && now >= thisAccessedTime + maxInactiveInterval * 1000L;
+  }
+}
@@ -0,0 +1,324 @@
+package server.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.config.ServerConfig;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 一个web应用的会话管理。会话保存在分段加锁的ConcurrentHashMap中，只在servlet调用getSession(true)时创建；
+ * 会话ID由SecureRandom生成，不可猜测。
+ *
+ * <p>过期由后台线程按{@link ExpiryWheel}每秒处理一个槽；请求查找会话时也会检查是否已经过期，
+ * 后台线程稍有延迟不会让过期的会话被继续使用。会话数达到session.maxActive时淘汰最早到期的会话。
+ *
+ * <p>开启session.persistent时会话写到{@link SessionStore}：请求只把会话标记为待持久化，后台写线程每隔
+ * session.persistIntervalMillis批量写出，同一个会话在一个周期内多次修改只写一次；失效的会话批量删除。
+ * 重启后内存中没有的会话在第一次被请求时才从存储中读出。
+ *
+ * @author zhout
+ * @date 2020/7/6 15:30
+ */
+public class SessionManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SessionManager.class);
+
+  /** 保存会话ID的Cookie名 */
+  public static final String COOKIE_NAME = "JSESSIONID";
+
+  /** 会话ID的随机字节数 */
+  private static final int ID_BYTES = 16;
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  /** 时间轮每个槽的时间跨度（毫秒） */
+  private static final long TICK_MILLIS = 1000;
+
+  /** 时间轮的槽数 */
+  private static final int WHEEL_SLOTS = 512;
+
+  private final String name;
+
+  private final SecureRandom random = new SecureRandom();
+
+  private final ConcurrentMap<String, StandardSession> sessions = new ConcurrentHashMap<>();
+
+  private final ExpiryWheel wheel = new ExpiryWheel(TICK_MILLIS, WHEEL_SLOTS);
+
+  /** 新会话的最大不活动时间（秒） */
+  private final int timeoutSeconds;
+
+  /** 最多保存的会话数，小于等于0表示不限制 */
+  private final int maxActive;
+
+  private ScheduledExecutorService sweeper;
+
+  /** 持久化存储，没有开启持久化或者打开失败时为null */
+  private volatile SessionStore store;
+
+  /** 反序列化会话属性用的类加载器 */
+  private final Supplier<ClassLoader> classLoader;
+
+  /** 批量写出的间隔（毫秒） */
+  private final long persistInterval;
+
+  /** 待写出的会话 */
+  private final ConcurrentMap<String, StandardSession> dirty = new ConcurrentHashMap<>();
+
+  /** 待从存储中删除的会话ID，写出之前不能再从存储中恢复 */
+  private final Set<String> pendingRemovals = ConcurrentHashMap.newKeySet();
+
+  private ScheduledExecutorService writer;
+
+  /**
+   * 构造方法
+   *
+   * @param name web应用名，用于线程名和存储文件名
+   * @param config web应用的配置
+   * @param classLoader 反序列化会话属性用的类加载器，重新部署后会变化
+   */
+  public SessionManager(String name, ServerConfig config, Supplier<ClassLoader> classLoader) {
+    this.name = name;
+    this.timeoutSeconds = config.getInt("session.timeoutSeconds", 1800);
+    this.maxActive = config.getInt("session.maxActive", 10000);
+    this.classLoader = classLoader;
+    this.persistInterval = Math.max(1, config.getInt("session.persistIntervalMillis", 1000));
+    if (config.getBoolean("session.persistent", false)) {
+      String dir =
+          config.getString(
+              "session.storeDir",
+              Paths.get(System.getProperty("java.io.tmpdir"), "simple-tomcat", "sessions")
+                  .toString());
+      this.store = new FileSessionStore(Paths.get(dir, name + ".log"));
+    }
+  }
+
+  /** 启动过期检查线程 */
+  public void start() {
+    sweeper =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "session-sweeper-" + name);
+              thread.setDaemon(true);
+              return thread;
+            });
+    sweeper.scheduleAtFixedRate(this::sweep, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    if (store == null) {
+      return;
+    }
+    try {
+      store.open();
+    } catch (IOException e) {
+      LOGGER.warn("Open session store is fail, sessions will not be persisted!", e);
+      store = null;
+      return;
+    }
+    writer =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "session-writer-" + name);
+              thread.setDaemon(true);
+              return thread;
+            });
+    writer.scheduleWithFixedDelay(
+        this::flush, persistInterval, persistInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /** 停止后台线程，写出所有待持久化的会话后丢弃内存中的会话 */
+  public void stop() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+    }
+    if (writer != null) {
+      writer.shutdown();
+      try {
+        writer.awaitTermination(persistInterval + 5000, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      flush();
+      try {
+        store.close();
+      } catch (IOException e) {
+        LOGGER.warn("Close session store is fail!", e);
+      }
+    }
+    sessions.clear();
+  }
+
+  /**
+   * 查找有效的会话并记录本次访问
+   *
+   * @param id 会话ID
+   * @return 会话，不存在或者已经过期时返回null
+   */
+  public StandardSession find(String id) {
+    if (id == null) {
+      return null;
+    }
+    StandardSession session = sessions.get(id);
+    if (session == null && (session = restore(id)) == null) {
+      return null;
+    }
+    if (!session.isValid() || session.isExpired(System.currentTimeMillis())) {
+      expire(session);
+      return null;
+    }
+    session.access();
+    return session;
+  }
+
+  /**
+   * 创建新的会话，会话数达到上限时先淘汰最早到期的会话
+   *
+   * @return 新会话
+   * @throws IllegalStateException 达到上限且没有可以淘汰的会话
+   */
+  public StandardSession create() {
+    evictIfFull();
+    StandardSession session;
+    do {
+      session = new StandardSession(this, generateId(), timeoutSeconds);
+    } while (sessions.putIfAbsent(session.getId(), session) != null);
+    wheel.schedule(session);
+    markDirty(session);
+    return session;
+  }
+
+  /**
+   * 从存储中恢复内存中没有的会话
+   *
+   * @param id 会话ID
+   * @return 会话，存储中没有或者已经过期时返回null
+   */
+  private StandardSession restore(String id) {
+    SessionStore current = store;
+    if (current == null || pendingRemovals.contains(id)) {
+      return null;
+    }
+    SessionData data;
+    try {
+      data = current.load(id, classLoader.get());
+    } catch (IOException e) {
+      LOGGER.warn(String.format("Load session %s is fail!", id), e);
+      return null;
+    }
+    if (data == null) {
+      return null;
+    }
+    if (data.isExpired(System.currentTimeMillis())) {
+      pendingRemovals.add(id);
+      return null;
+    }
+    evictIfFull();
+    StandardSession session = new StandardSession(this, data);
+    StandardSession existing = sessions.putIfAbsent(id, session);
+    if (existing != null) {
+      return existing;
+    }
+    wheel.schedule(session);
+    LOGGER.debug("Session {} is restored from store", id);
+    return session;
+  }
+
+  /** 会话数达到上限时淘汰最早到期的会话 */
+  private void evictIfFull() {
+    while (maxActive > 0 && sessions.size() >= maxActive) {
+      StandardSession eldest = wheel.pollEarliest();
+      if (eldest == null) {
+        throw new IllegalStateException("Too many active sessions: " + sessions.size());
+      }
+      LOGGER.debug("Session limit {} is reached, evict session {}", maxActive, eldest.getId());
+      expire(eldest);
+    }
+  }
+
+  public int getActiveCount() {
+    return sessions.size();
+  }
+
+  /** 会话的最大不活动时间改变后重新放入时间轮 */
+  void schedule(StandardSession session) {
+    wheel.schedule(session);
+  }
+
+  /** 会话被访问或修改后标记为待持久化 */
+  void markDirty(StandardSession session) {
+    if (store != null) {
+      dirty.put(session.getId(), session);
+    }
+  }
+
+  /** 会话失效时从管理器中删除，持久化时同时从存储中删除 */
+  void remove(StandardSession session) {
+    if (sessions.remove(session.getId(), session) && store != null) {
+      dirty.remove(session.getId());
+      pendingRemovals.add(session.getId());
+    }
+  }
+
+  /** 批量写出待持久化的会话和待删除的会话，在写线程中执行 */
+  private void flush() {
+    SessionStore current = store;
+    if (current == null) {
+      return;
+    }
+    try {
+      List<SessionData> saves = new ArrayList<>(dirty.size());
+      for (StandardSession session : dirty.values()) {
+        // 先移出再生成快照，之后的修改会重新标记
+        dirty.remove(session.getId(), session);
+        if (session.isValid()) {
+          saves.add(session.toData());
+        }
+      }
+      current.save(saves);
+      List<String> removals = new ArrayList<>(pendingRemovals);
+      if (!removals.isEmpty()) {
+        current.remove(removals);
+        pendingRemovals.removeAll(removals);
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Persist sessions is fail!", e);
+    }
+  }
+
+  private void expire(StandardSession session) {
+    remove(session);
+    session.expire();
+  }
+
+  /** 处理时间轮中到期的槽 */
+  private void sweep() {
+    try {
+      for (StandardSession session : wheel.advance(System.currentTimeMillis())) {
+        expire(session);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Expire sessions is fail!", e);
+    }
+  }
+
+  private String generateId() {
+    byte[] bytes = new byte[ID_BYTES];
+    random.nextBytes(bytes);
+    char[] chars = new char[ID_BYTES << 1];
+    for (int i = 0; i < ID_BYTES; i++) {
+      chars[i << 1] = HEX[(bytes[i] >> 4) & 0xF];
+      chars[(i << 1) + 1] = HEX[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+}
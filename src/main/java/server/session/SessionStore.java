@@ -0,0 +1,54 @@
+package server.session;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * 会话持久化存储。所有写操作都由{@link SessionManager}的后台写线程批量调用，不在请求处理路径上；
+ * {@link #load(String, ClassLoader)}在请求第一次访问内存中没有的会话时调用
+ *
+ * @author zhout
+ * @date 2020/7/7 10:20
+ */
+public interface SessionStore {
+
+  /**
+   * 打开存储，服务器启动时调用
+   *
+   * @throws IOException 打开失败
+   */
+  void open() throws IOException;
+
+  /**
+   * 批量保存会话，同一个会话以最后一次保存的为准
+   *
+   * @param sessions 会话数据
+   * @throws IOException 写出错
+   */
+  void save(Collection<SessionData> sessions) throws IOException;
+
+  /**
+   * 批量删除会话
+   *
+   * @param ids 会话ID
+   * @throws IOException 写出错
+   */
+  void remove(Collection<String> ids) throws IOException;
+
+  /**
+   * 读取会话
+   *
+   * @param id 会话ID
+   * @param classLoader 反序列化属性用的类加载器
+   * @return 会话数据，不存在时返回null
+   * @throws IOException 读取出错
+   */
+  SessionData load(String id, ClassLoader classLoader) throws IOException;
+
+  /**
+   * 关闭存储，服务器停止时调用
+   *
+   * @throws IOException 关闭出错
+   */
+  void close() throws IOException;
+}
@@ -0,0 +1,266 @@
+package server.session;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 内存中的会话。属性保存在并发Map中，同一个会话的多个请求可以同时读写；访问时间只是一次volatile写，
+ * 过期由{@link SessionManager}的后台线程统一检查。访问和修改只把会话标记为待持久化，写盘由后台线程完成
+ *
+ * @author zhout
+ * @date 2020/7/6 14:20
+ */
+public class StandardSession implements HttpSession {
+
+  private final SessionManager manager;
+
+  private final String id;
+
+  private final long creationTime;
+
+  /** 上一次请求访问的时间 */
+  private volatile long lastAccessedTime;
+
+  /** 本次请求访问的时间，过期时间从这里开始计算 */
+  private volatile long thisAccessedTime;
+
+  /** 最大不活动时间（秒），小于等于0表示永不过期 */
+  private volatile int maxInactiveInterval;
+
+  private volatile boolean isNew = true;
+
+  private volatile boolean valid = true;
+
+  /** 是否已经在过期时间轮中 */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+  StandardSession(SessionManager manager, String id, int maxInactiveInterval) {
+    this.manager = manager;
+    this.id = id;
+    this.creationTime = System.currentTimeMillis();
+    this.lastAccessedTime = creationTime;
+    this.thisAccessedTime = creationTime;
+    this.maxInactiveInterval = maxInactiveInterval;
+  }
+
+  /**
+   * 从持久化的数据恢复会话
+   *
+   * @param manager 所属的会话管理
+   * @param data 持久化的数据
+   */
+  StandardSession(SessionManager manager, SessionData data) {
+    this.manager = manager;
+    this.id = data.getId();
+    this.creationTime = data.getCreationTime();
+    this.lastAccessedTime = data.getLastAccessedTime();
+    this.thisAccessedTime = data.getThisAccessedTime();
+    this.maxInactiveInterval = data.getMaxInactiveInterval();
+    this.isNew = false;
+    this.attributes.putAll(data.getAttributes());
+  }
+
+  /** 生成当前状态的快照，交给后台线程持久化 */
+  SessionData toData() {
+    return new SessionData(
+        id,
+        creationTime,
+        lastAccessedTime,
+        thisAccessedTime,
+        maxInactiveInterval,
+        new HashMap<>(attributes));
+  }
+
+  /** 请求开始使用这个会话 */
+  void access() {
+    lastAccessedTime = thisAccessedTime;
+    thisAccessedTime = System.currentTimeMillis();
+    isNew = false;
+    manager.markDirty(this);
+  }
+
+  /**
+   * 会话的过期时间
+   *
+   * @return 过期时间（毫秒），永不过期时返回{@link Long#MAX_VALUE}
+   */
+  long getExpiryTime() {
+    int interval = maxInactiveInterval;
+    return interval > 0 ? thisAccessedTime + interval * 1000L : Long.MAX_VALUE;
+  }
+
+  /**
+   * 标记已放入时间轮
+   *
+   * @return 之前不在时间轮中时返回true
+   */
+  boolean markScheduled() {
+    return scheduled.compareAndSet(false, true);
+  }
+
+  void clearScheduled() {
+    scheduled.set(false);
+  }
+
+  boolean isExpired(long now) {
+    return now >= getExpiryTime();
+  }
+
+  /** 标记失效并通知绑定的属性，只会执行一次 */
+  void expire() {
+    synchronized (this) {
+      if (!valid) {
+        return;
+      }
+      valid = false;
+    }
+    for (String name : attributes.keySet()) {
+      unbind(name, attributes.remove(name));
+    }
+  }
+
+  @Override
+  public boolean isNew() {
+    checkValid();
+    return isNew;
+  }
+
+  public boolean isValid() {
+    return valid;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public long getCreationTime() {
+    checkValid();
+    return creationTime;
+  }
+
+  @Override
+  public long getLastAccessedTime() {
+    checkValid();
+    return lastAccessedTime;
+  }
+
+  @Override
+  public ServletContext getServletContext() {
+    return null;
+  }
+
+  @Override
+  public void setMaxInactiveInterval(int interval) {
+    this.maxInactiveInterval = interval;
+    manager.schedule(this);
+    manager.markDirty(this);
+  }
+
+  @Override
+  public int getMaxInactiveInterval() {
+    return maxInactiveInterval;
+  }
+
+  @Override
+  @Deprecated
+  public HttpSessionContext getSessionContext() {
+    return null;
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    checkValid();
+    return name == null ? null : attributes.get(name);
+  }
+
+  @Override
+  @Deprecated
+  public Object getValue(String name) {
+    return getAttribute(name);
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    checkValid();
+    return Collections.enumeration(attributes.keySet());
+  }
+
+  @Override
+  @Deprecated
+  public String[] getValueNames() {
+    checkValid();
+    return attributes.keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public void setAttribute(String name, Object value) {
+    checkValid();
+    if (value == null) {
+      removeAttribute(name);
+      return;
+    }
+    if (value instanceof HttpSessionBindingListener) {
+      ((HttpSessionBindingListener) value).valueBound(new HttpSessionBindingEvent(this, name, value));
+    }
+    Object old = attributes.put(name, value);
+    if (old != value) {
+      unbind(name, old);
+    }
+    manager.markDirty(this);
+  }
+
+  @Override
+  @Deprecated
+  public void putValue(String name, Object value) {
+    setAttribute(name, value);
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    checkValid();
+    Object old = attributes.remove(name);
+    if (old != null) {
+      unbind(name, old);
+      manager.markDirty(this);
+    }
+  }
+
+  @Override
+  @Deprecated
+  public void removeValue(String name) {
+    removeAttribute(name);
+  }
+
+  @Override
+  public void invalidate() {
+    checkValid();
+    manager.remove(this);
+    expire();
+  }
+
+  private void unbind(String name, Object value) {
+    if (value instanceof HttpSessionBindingListener) {
+      ((HttpSessionBindingListener) value)
+          .valueUnbound(new HttpSessionBindingEvent(this, name, value));
+    }
+  }
+
+  private void checkValid() {
+    if (!valid) {
+      throw new IllegalStateException("Session " + id + " has been invalidated");
+    }
+  }
+}
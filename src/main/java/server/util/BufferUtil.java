@@ -0,0 +1,57 @@
+package server.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接内存缓冲区工具
+ *
+ * @author zhout
+ * @date 2020/7/11 09:30
+ */
+public class BufferUtil {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BufferUtil.class);
+
+  /** sun.misc.Unsafe实例，不可用时为null */
+  private static final Object UNSAFE;
+
+  /** Unsafe.invokeCleaner(ByteBuffer)，Java 9开始提供 */
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.warn("Unsafe.invokeCleaner is not available, direct buffers are released by GC.");
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  /**
+   * 立即释放直接内存或解除文件映射，不必等到缓冲区被GC回收。 调用之后再访问该缓冲区会导致JVM崩溃，调用方必须保证没有其他线程还在使用
+   *
+   * @param buffer 直接分配或FileChannel.map得到的原始缓冲区，不能是duplicate或slice
+   */
+  public static void free(ByteBuffer buffer) {
+    if (INVOKE_CLEANER == null || !buffer.isDirect()) {
+      return;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buffer);
+    } catch (ReflectiveOperationException e) {
+      LOGGER.debug("Free direct buffer is fail.", e);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package server.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+
+/**
+ * HTTP日期工具。DateTimeFormatter是线程安全的，可以直接共用，不需要像SimpleDateFormat那样每个请求创建一份
+ *
+ * <p>解析时最常见的IMF-fixdate格式按固定位置逐字符解析，不创建任何对象；RFC 850和asctime两种过时格式交给DateTimeFormatter。
+ *
+ * @author zhout
+ * @date 2020/7/10 10:05
+ */
+public class DateUtil {
+
+  /** RFC 7231中规定的日期格式，例如 Sun, 06 Nov 1994 08:49:37 GMT */
+  private static final DateTimeFormatter HTTP_DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+          .withZone(ZoneOffset.UTC);
+
+  /** RFC 850格式，例如 Sunday, 06-Nov-94 08:49:37 GMT */
+  private static final DateTimeFormatter RFC_850_FORMATTER =
+      new DateTimeFormatterBuilder()
+          .appendPattern("EEEE, dd-MMM-")
+          .appendValueReduced(ChronoField.YEAR, 2, 2, 1970)
+          .appendPattern(" HH:mm:ss 'GMT'")
+          .toFormatter(Locale.US);
+
+  /** asctime格式，例如 Sun Nov  6 08:49:37 1994 */
+  private static final DateTimeFormatter ASCTIME_FORMATTER =
+      DateTimeFormatter.ofPattern("EEE MMM ppd HH:mm:ss yyyy", Locale.US);
+
+  private static final DateTimeFormatter[] OBSOLETE_FORMATTERS = {
+    RFC_850_FORMATTER, ASCTIME_FORMATTER
+  };
+
+  /** IMF-fixdate的长度 */
+  private static final int IMF_FIXDATE_LENGTH = 29;
+
+  private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+  /**
+   * 把时间戳格式化为HTTP日期
+   *
+   * @param millis 毫秒时间戳
+   * @return HTTP日期字符串
+   */
+  public static String formatHttpDate(long millis) {
+    return HTTP_DATE_FORMATTER.format(Instant.ofEpochMilli(millis));
+  }
+
+  /**
+   * 解析HTTP日期，支持RFC 7231规定的三种格式
+   *
+   * @param value 日期字符串
+   * @return 毫秒时间戳，无法解析时返回-1
+   */
+  public static long parseHttpDate(String value) {
+    if (value == null) {
+      return -1L;
+    }
+    value = value.trim();
+    long millis = parseImfFixdate(value);
+    if (millis >= 0) {
+      return millis;
+    }
+    for (DateTimeFormatter formatter : OBSOLETE_FORMATTERS) {
+      try {
+        return LocalDateTime.parse(value, formatter).toInstant(ZoneOffset.UTC).toEpochMilli();
+      } catch (DateTimeParseException e) {
+        // 尝试下一种格式
+      }
+    }
+    return -1L;
+  }
+
+  /**
+   * 按固定位置解析IMF-fixdate，星期只校验格式不校验是否和日期对应
+   *
+   * @param value 日期字符串
+   * @return 毫秒时间戳，格式不符时返回-1
+   */
+  private static long parseImfFixdate(String value) {
+    if (value.length() != IMF_FIXDATE_LENGTH
+        || value.charAt(3) != ','
+        || value.charAt(4) != ' '
+        || value.charAt(7) != ' '
+        || value.charAt(11) != ' '
+        || value.charAt(16) != ' '
+        || value.charAt(19) != ':'
+        || value.charAt(22) != ':'
+        || !value.endsWith(" GMT")) {
+      return -1L;
+    }
+    int day = digits(value, 5, 2);
+    int month = month(value, 8);
+    int year = digits(value, 12, 4);
+    int hour = digits(value, 17, 2);
+    int minute = digits(value, 20, 2);
+    int second = digits(value, 23, 2);
+    if (day < 1 || day > 31 || month < 0 || year < 0 || hour > 23 || minute > 59 || second > 60) {
+      return -1L;
+    }
+    long seconds = ((daysFromCivil(year, month + 1, day) * 24 + hour) * 60 + minute) * 60 + second;
+    return seconds * 1000;
+  }
+
+  private static int digits(String value, int offset, int length) {
+    int result = 0;
+    for (int i = offset; i < offset + length; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  private static int month(String value, int offset) {
+    for (int i = 0; i < MONTHS.length(); i += 3) {
+      if (MONTHS.regionMatches(i, value, offset, 3)) {
+        return i / 3;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * 公历日期距1970-01-01的天数
+   *
+   * @param year 年
+   * @param month 月，1-12
+   * @param day 日
+   * @return 天数
+   */
+  private static long daysFromCivil(int year, int month, int day) {
+    year -= month <= 2 ? 1 : 0;
+    int era = year / 400;
+    int yearOfEra = year - era * 400;
+    int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+}
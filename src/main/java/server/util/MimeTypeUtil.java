@@ -0,0 +1,57 @@
+package server.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 根据文件扩展名获取Content-Type
+ *
+ * @author zhout
+ * @date 2020/7/13 10:30
+ */
+public class MimeTypeUtil {
+
+  /** 无法识别的文件类型 */
+  public static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+  private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+  static {
+    MIME_TYPES.put("html", "text/html");
+    MIME_TYPES.put("htm", "text/html");
+    MIME_TYPES.put("css", "text/css");
+    MIME_TYPES.put("js", "application/javascript");
+    MIME_TYPES.put("json", "application/json");
+    MIME_TYPES.put("xml", "application/xml");
+    MIME_TYPES.put("txt", "text/plain");
+    MIME_TYPES.put("csv", "text/csv");
+    MIME_TYPES.put("svg", "image/svg+xml");
+    MIME_TYPES.put("png", "image/png");
+    MIME_TYPES.put("jpg", "image/jpeg");
+    MIME_TYPES.put("jpeg", "image/jpeg");
+    MIME_TYPES.put("gif", "image/gif");
+    MIME_TYPES.put("ico", "image/x-icon");
+    MIME_TYPES.put("webp", "image/webp");
+    MIME_TYPES.put("woff", "font/woff");
+    MIME_TYPES.put("woff2", "font/woff2");
+    MIME_TYPES.put("pdf", "application/pdf");
+    MIME_TYPES.put("zip", "application/zip");
+    MIME_TYPES.put("gz", "application/gzip");
+    MIME_TYPES.put("mp4", "video/mp4");
+    MIME_TYPES.put("wasm", "application/wasm");
+  }
+
+  /**
+   * 获取文件对应的Content-Type
+   *
+   * @param name 文件名或URI
+   * @return Content-Type，无法识别时返回application/octet-stream
+   */
+  public static String getMimeType(String name) {
+    int dot = name.lastIndexOf('.');
+    if (dot < 0 || dot < name.lastIndexOf('/')) {
+      return DEFAULT_MIME_TYPE;
+    }
+    return MIME_TYPES.getOrDefault(name.substring(dot + 1).toLowerCase(), DEFAULT_MIME_TYPE);
+  }
+}
@@ -1,8 +1,5 @@
 package server.util;
 
-import java.util.Map;
-import java.util.stream.Stream;
-
 /**
  * @author zhout
  * @date 2020/6/11 17:05
@@ -114,51 +111,4 @@ public final class RequestUtil {
     }
     return encoding.trim();
   }
-
-  /**
-   * 解析请求参数
-   *
-   * @param map Request对象中的参数map
-   * @param params 解析前的参数
-   * @param encoding 编码
-   */
-  public static void parseParameters(ParameterMap map, String params, String encoding) {
-    if (StringUtil.isBlank(params)) {
-      return;
-    }
-    String[] paramArray = params.split("&");
-    if (ArrayUtil.isEmpty(paramArray)) {
-      return;
-    }
-    Stream.of(paramArray)
-        .forEach(
-            param -> {
-              String[] splitParam = param.split("=");
-              String name = splitParam[0];
-              String value = splitParam[1];
-              putMapEntry(
-                  map, StringUtil.urlDecode(name, encoding), StringUtil.urlDecode(value, encoding));
-            });
-  }
-
-  /**
-   * 将key和value添加进map中
-   *
-   * @param map Map
-   * @param name key
-   * @param value value
-   */
-  private static void putMapEntry(Map<String, String[]> map, String name, String value) {
-    String[] newValues;
-    String[] oldValues = map.get(name);
-    if (oldValues == null) {
-      newValues = new String[1];
-      newValues[0] = value;
-    } else {
-      newValues = new String[oldValues.length + 1];
-      System.arraycopy(oldValues, 0, newValues, 0, oldValues.length);
-      newValues[oldValues.length] = value;
-    }
-    map.put(name, newValues);
-  }
 }
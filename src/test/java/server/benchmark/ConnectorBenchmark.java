@@ -0,0 +1,183 @@
+package server.benchmark;
+
+import server.config.ServerConfig;
+import server.connector.AbstractConnector;
+import server.connector.HttpConnector;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 比较阻塞连接器在平台线程池和虚拟线程两种模式下的表现。不是单元测试，需要手动运行：
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:&lt;依赖&gt; server.benchmark.ConnectorBenchmark 2000 20 50
+ * </pre>
+ *
+ * 参数依次为并发连接数、每个连接上的请求数、两次请求之间的间隔（毫秒）。 每个客户端在长连接上间隔发送请求，模拟大量慢客户端和阻塞等待，
+ * 平台线程模式下每个空闲的长连接都会占住一个工作线程。虚拟线程模式需要在Java 21及以上运行。
+ *
+ * @author zhout
+ * @date 2020/7/8 10:30
+ */
+public class ConnectorBenchmark {
+
+  private static final int PORT = 18080;
+
+  private static final byte[] REQUEST =
+      "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+  public static void main(String[] args) throws Exception {
+    int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int thinkMillis = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+    System.out.printf(
+        "connections=%d, requests/connection=%d, think=%dms%n", connections, requests, thinkMillis);
+    run("platform-pool", false, connections, requests, thinkMillis);
+    run("virtual-thread", true, connections, requests, thinkMillis);
+  }
+
+  private static void run(
+      String name, boolean virtualThreads, int connections, int requests, int thinkMillis)
+      throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("server.port", String.valueOf(PORT));
+    properties.setProperty("server.backlog", String.valueOf(connections));
+    properties.setProperty("server.maxKeepAliveRequests", "-1");
+    properties.setProperty("executor.virtualThreads", String.valueOf(virtualThreads));
+    AbstractConnector connector = new HttpConnector(new ServerConfig(properties));
+    connector.start();
+    awaitListening();
+
+    AtomicInteger ok = new AtomicInteger();
+    AtomicInteger rejected = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    long[] latencies = new long[connections * requests];
+    AtomicInteger latencyIndex = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(connections);
+    ExecutorService clients = Executors.newFixedThreadPool(connections);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < connections; i++) {
+      clients.execute(
+          () -> {
+            try (Socket socket = new Socket("127.0.0.1", PORT)) {
+              socket.setSoTimeout(60000);
+              OutputStream output = socket.getOutputStream();
+              InputStream input = new BufferedInputStream(socket.getInputStream());
+              for (int r = 0; r < requests; r++) {
+                long begin = System.nanoTime();
+                output.write(REQUEST);
+                output.flush();
+                int status = readResponse(input);
+                latencies[latencyIndex.getAndIncrement()] = System.nanoTime() - begin;
+                if (status == 200) {
+                  ok.incrementAndGet();
+                } else {
+                  rejected.incrementAndGet();
+                  break;
+                }
+                Thread.sleep(thinkMillis);
+              }
+            } catch (Exception e) {
+              failed.incrementAndGet();
+            } finally {
+              done.countDown();
+            }
+          });
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+    clients.shutdown();
+    connector.stop();
+
+    long[] sorted = Arrays.copyOf(latencies, latencyIndex.get());
+    Arrays.sort(sorted);
+    System.out.printf(
+        "%-15s ok=%d non-200=%d failed-connections=%d time=%dms throughput=%.0f req/s"
+            + " p50=%.2fms p99=%.2fms%n",
+        name,
+        ok.get(),
+        rejected.get(),
+        failed.get(),
+        TimeUnit.NANOSECONDS.toMillis(elapsed),
+        ok.get() / (elapsed / 1e9),
+        percentile(sorted, 0.50),
+        percentile(sorted, 0.99));
+    // 等待监听端口释放，避免下一轮绑定失败
+    Thread.sleep(1000);
+  }
+
+  /** 读取一个响应，按Content-Length跳过响应体，返回状态码 */
+  private static int readResponse(InputStream input) throws IOException {
+    String statusLine = readLine(input);
+    int status = Integer.parseInt(statusLine.split(" ")[1]);
+    int contentLength = 0;
+    String line;
+    while (!(line = readLine(input)).isEmpty()) {
+      if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+        contentLength = Integer.parseInt(line.substring(15).trim());
+      }
+    }
+    for (long skipped = 0; skipped < contentLength; ) {
+      long n = input.skip(contentLength - skipped);
+      if (n <= 0) {
+        throw new IOException("connection closed");
+      }
+      skipped += n;
+    }
+    return status;
+  }
+
+  private static String readLine(InputStream input) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int b;
+    while ((b = input.read()) != '\n') {
+      if (b < 0) {
+        throw new IOException("connection closed");
+      }
+      if (b != '\r') {
+        line.append((char) b);
+      }
+    }
+    return line.toString();
+  }
+
+  private static void awaitListening() throws InterruptedException {
+    for (int i = 0; i < 50; i++) {
+      try {
+        // 只确认可以连接，连上后立即关闭
+        new Socket("127.0.0.1", PORT).close();
+        return;
+      } catch (IOException e) {
+        if (!(e instanceof ConnectException)) {
+          return;
+        }
+        Thread.sleep(100);
+      }
+    }
+    throw new IllegalStateException("connector is not listening on " + PORT);
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.min(sorted.length - 1, Math.round(sorted.length * percentile));
+    return sorted[index] / 1e6;
+  }
+}